@@ -0,0 +1,80 @@
+package benchmark;
+
+import misc.AudioCodec;
+import misc.Frame;
+import misc.FrameCodec;
+import misc.JitterBuffer;
+import misc.SerializableAudioFormat;
+import misc.WuzlConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting one frame from the wire into a playable state:
+ * passing it through the {@link JitterBuffer} and encoding/decoding it with every {@link AudioCodec}.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramingBenchmark {
+
+    @Param({"PCM", "ULAW", "ALAW", "IMA_ADPCM"})
+    private AudioCodec codec;
+
+    @Param({"1024", "8192"})
+    private int bufferSize;
+
+    private FrameCodec frameCodec;
+    private JitterBuffer jitterBuffer;
+    private byte[] pcm;
+    private byte[] encoded;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        SerializableAudioFormat format = new SerializableAudioFormat(44100, 16, 1, true, true);
+        WuzlConfig config = new WuzlConfig(0, bufferSize, format, true, 0, codec);
+        frameCodec = config.newCodec();
+        jitterBuffer = new JitterBuffer(config);
+        pcm = new byte[bufferSize];
+        encoded = new byte[config.encodedBufferSize()];
+        new Random(42).nextBytes(pcm);
+    }
+
+
+    @Benchmark
+    public int encode() {
+        return frameCodec.encode(pcm, pcm.length, encoded);
+    }
+
+    @Benchmark
+    public int decode() {
+        return frameCodec.decode(encoded, encoded.length, pcm);
+    }
+
+    /**
+     * One frame in and one out, like a source that keeps pace with the tick.
+     */
+    @Benchmark
+    public int buffer() {
+        jitterBuffer.write(sequence++, encoded, 0, encoded.length);
+        Frame frame = jitterBuffer.poll();
+
+        if (frame == null) {
+            return 0;
+        }
+
+        int length = frame.length();
+        frame.release();
+        return length;
+    }
+
+}
@@ -0,0 +1,162 @@
+package benchmark;
+
+import misc.AudioCodec;
+import misc.Handshake;
+import misc.SerializableAudioFormat;
+import misc.WireFrame;
+import misc.WuzlConfig;
+import org.openjdk.jmh.annotations.*;
+import server.WuzlServer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link WuzlServer} in-process with N synthetic clients that send a frame per tick over loopback.
+ * Every operation receives one tick worth of frames on the first client, so the throughput is the frames/sec
+ * the server delivers to a listener, and the sample time (with its p99) is how long a listener waits for a frame.
+ * The buffer size is kept small, so the server ticks every few milliseconds.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class LoopbackBenchmark {
+    private static final int BUFFER_SIZE = 256;  // ~2.9 ms per tick
+
+    @Param({"2", "8", "32"})
+    private int clients;
+
+    @Param({"true", "false"})
+    private boolean serverMixing;
+
+    private WuzlServer server;
+    private ScheduledExecutorService senders;
+    private List<SyntheticClient> clientList;
+    private byte[] frame;
+
+    @Setup
+    public void setUp() throws Exception {
+        WuzlConfig config = new WuzlConfig(0, BUFFER_SIZE, new SerializableAudioFormat(44100, 16, 1, true, true), serverMixing, 0, AudioCodec.PCM);
+        server = new WuzlServer(config);
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        senders = Executors.newScheduledThreadPool(2);
+        clientList = new ArrayList<>();
+        frame = new byte[config.encodedBufferSize()];
+
+        for (int i = 0; i < clients; i++) {
+            SyntheticClient client = new SyntheticClient(new Socket("localhost", server.getLocalPort()));
+            clientList.add(client);
+            senders.scheduleAtFixedRate(client::sendFrame, 0, config.frameDurationNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        // Only the first client is measured, the others just have to be drained so the server does not drop their ticks
+        for (SyntheticClient client : clientList.subList(1, clientList.size())) {
+            Thread drainer = new Thread(() -> {
+                try {
+                    while (true) {
+                        client.receiveTick(new byte[frame.length]);
+                    }
+                } catch (IOException ignored) {
+                    // Closed on tear down
+                }
+            });
+            drainer.setDaemon(true);
+            drainer.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        senders.shutdownNow();
+
+        for (SyntheticClient client : clientList) {
+            client.socket.close();
+        }
+
+        server.close();
+    }
+
+
+    /**
+     * @return the number of frames received in this tick
+     */
+    @Benchmark
+    public int receiveTick() throws IOException {
+        return clientList.get(0).receiveTick(frame);
+    }
+
+
+    private static final class SyntheticClient {
+        private final Socket socket;
+        private final DataInputStream inputStream;
+        private final OutputStream outputStream;
+        private final int id;
+        private final ByteBuffer frame;
+        private final ByteBuffer header;
+        private int sequence;
+
+        private SyntheticClient(Socket socket) throws IOException {
+            this.socket = socket;
+            this.inputStream = new DataInputStream(socket.getInputStream());
+            this.outputStream = socket.getOutputStream();
+            Handshake.writeHello(new DataOutputStream(outputStream), EnumSet.of(AudioCodec.PCM), Handshake.TCP, Handshake.DEFAULT_ROOM);
+            Handshake.Welcome welcome = Handshake.readWelcome(inputStream, socket.getPort());
+            WuzlConfig config = welcome.config();
+            this.id = welcome.clientId();
+            this.frame = ByteBuffer.allocate(WireFrame.HEADER_SIZE + config.encodedBufferSize());
+            this.header = ByteBuffer.allocate(WireFrame.HEADER_SIZE);
+        }
+
+        private void sendFrame() {
+            frame.clear();
+            WireFrame.writeHeader(frame, WireFrame.AUDIO, (byte) 0, id, sequence++, System.nanoTime(), frame.capacity() - WireFrame.HEADER_SIZE);
+
+            try {
+                outputStream.write(frame.array());
+            } catch (IOException ignored) {
+                // Closed on tear down
+            }
+        }
+
+        private int receiveTick(byte[] buffer) throws IOException {
+            int frames = 0;
+
+            do {
+                inputStream.readFully(header.array());
+                inputStream.readFully(buffer, 0, WireFrame.payloadLength(header));
+
+                if (WireFrame.type(header) == WireFrame.AUDIO) {
+                    frames++;
+                }
+            } while (!WireFrame.isEndOfTick(header));
+
+            return frames;
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import misc.Mixer;
+import misc.WuzlConfig;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixing throughput depending on the number of streams and the buffer size, compared to the old byte-wise sum.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MixerBenchmark {
+
+    @Param({"2", "8", "32"})
+    private int streams;
+
+    @Param({"1024", "8192"})
+    private int bufferSize;
+
+    private Mixer mixer;
+    private byte[][] frames;
+    private byte[] target;
+    private int[] sumOfAllSignals;
+
+    @Setup
+    public void setUp() {
+        AudioFormat audioFormat = WuzlConfig.defaultSettings().audioFormat();
+        Random random = new Random(42);
+        mixer = new Mixer(audioFormat, bufferSize);
+        frames = new byte[streams][bufferSize];
+        target = new byte[bufferSize];
+        sumOfAllSignals = new int[bufferSize];
+
+        for (byte[] frame : frames) {
+            random.nextBytes(frame);
+        }
+    }
+
+
+    @Benchmark
+    public byte[] mix() {
+        mixer.clear();
+
+        for (byte[] frame : frames) {
+            mixer.add(frame, frame.length);
+        }
+
+        mixer.mix(target);
+        return target;
+    }
+
+    /**
+     * What the client did before {@link Mixer} existed, as a reference.
+     */
+    @Benchmark
+    public byte[] byteWiseSum() {
+        java.util.Arrays.fill(sumOfAllSignals, 0);
+
+        for (byte[] frame : frames) {
+            for (int i = 0; i < frame.length; i++) {
+                sumOfAllSignals[i] += frame[i];
+            }
+        }
+
+        for (int i = 0; i < sumOfAllSignals.length; i++) {
+            target[i] = (byte) Math.min(Math.max(sumOfAllSignals[i], Byte.MIN_VALUE), Byte.MAX_VALUE);
+        }
+
+        return target;
+    }
+
+}
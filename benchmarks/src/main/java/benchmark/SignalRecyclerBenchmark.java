@@ -0,0 +1,65 @@
+package benchmark;
+
+import client.PlaybackBuffer;
+import client.SignalRecycler;
+import misc.FrameRing;
+import misc.WuzlConfig;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one {@link SignalRecycler#recycle} call on a playback backlog, which is topped up with a sine tone before every call.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalRecyclerBenchmark {
+
+    @Param({"DELAY", "DISCARD", "SPEED_UP"})
+    private SignalRecycler recycler;
+
+    @Param({"1024", "8192"})
+    private int bufferSize;
+
+    private FrameRing ring;
+    private PlaybackBuffer playback;
+    private byte[] tone;
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        AudioFormat format = WuzlConfig.defaultSettings().audioFormat();
+        ring = new FrameRing(8, bufferSize);
+        playback = new PlaybackBuffer(ring, format, bufferSize);
+        tone = new byte[bufferSize];
+        buffer = new byte[bufferSize];
+
+        for (int i = 0; i < bufferSize / 2; i++) {
+            short sample = (short) (Math.sin(2 * Math.PI * 440 * i / format.getSampleRate()) * 10_000);
+            tone[2 * i] = (byte) (sample >> 8);
+            tone[2 * i + 1] = (byte) sample;
+        }
+    }
+
+
+    @Benchmark
+    public int recycle() throws Exception {
+        byte[] frame;
+
+        while ((frame = ring.claim()) != null) {
+            System.arraycopy(tone, 0, frame, 0, bufferSize);
+            ring.publish(bufferSize);
+        }
+
+        return recycler.recycle(playback, buffer);
+    }
+
+}
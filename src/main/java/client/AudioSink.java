@@ -0,0 +1,63 @@
+package client;
+
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Where a {@link WuzlClient} puts the audio it receives, usually an output device.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public interface AudioSink extends AutoCloseable {
+
+    void write(byte[] buffer, int length);
+
+    /**
+     * @return how many bytes were written but not played yet, the part of the playback latency spent in the device
+     */
+    default int queuedBytes() {
+        return 0;
+    }
+
+    default void open() throws LineUnavailableException {
+    }
+
+    @Override
+    default void close() {
+    }
+
+    static AudioSink of(SourceDataLine line) {
+        return new AudioSink() {
+            @Override
+            public void write(byte[] buffer, int length) {
+                line.write(buffer, 0, length);
+            }
+
+            @Override
+            public int queuedBytes() {
+                return line.getBufferSize() - line.available();
+            }
+
+            @Override
+            public void open() throws LineUnavailableException {
+                line.open();
+                line.start();
+            }
+
+            @Override
+            public void close() {
+                line.close();
+            }
+        };
+    }
+
+    /**
+     * @return a sink that throws everything away
+     */
+    static AudioSink discarding() {
+        return (buffer, length) -> {
+        };
+    }
+
+}
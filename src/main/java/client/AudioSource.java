@@ -0,0 +1,59 @@
+package client;
+
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.TargetDataLine;
+
+/**
+ * Where a {@link WuzlClient} takes the audio it sends from, usually an input device.
+ * Reading blocks until a whole buffer is available, so a source also sets the pace of the client.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public interface AudioSource extends AutoCloseable {
+
+    /**
+     * Fills the whole buffer, blocking as long as it takes to record it.
+     */
+    void read(byte[] buffer);
+
+    /**
+     * @return how many bytes were recorded but not read yet, the part of the capture latency spent in the device
+     */
+    default int availableBytes() {
+        return 0;
+    }
+
+    default void open() throws LineUnavailableException {
+    }
+
+    @Override
+    default void close() {
+    }
+
+    static AudioSource of(TargetDataLine line) {
+        return new AudioSource() {
+            @Override
+            public void read(byte[] buffer) {
+                line.read(buffer, 0, buffer.length);
+            }
+
+            @Override
+            public int availableBytes() {
+                return line.available();
+            }
+
+            @Override
+            public void open() throws LineUnavailableException {
+                line.open();
+                line.start();
+            }
+
+            @Override
+            public void close() {
+                line.close();
+            }
+        };
+    }
+
+}
@@ -1,51 +1,389 @@
 package client;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintStream;
+import misc.Frame;
+import misc.FramePool;
+import misc.JitterBuffer;
+import misc.Metrics;
+import misc.Transcoder;
+import misc.WireFrame;
+import misc.WuzlConfig;
+
+import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author Emilio Zottel (4AHIF)
  * @since 10.11.2022, Do.
  */
 public class ClientSocket {
+    private static final int OUTBOUND_CAPACITY = 8;   // Ticks
+    public static final int DEFAULT_MAX_OVERFLOWS = OUTBOUND_CAPACITY * 4;
+
+    private final SocketChannel channel;
     private final Socket socket;
-    private final InputStream socketInputStream;
-    private final OutputStream socketOutputStream;
-    private final byte[] buffer;
-    private boolean active;
-
-    public ClientSocket(Socket socket, int bufferSize) throws IOException {
-        this.socket = socket;
-        this.socketInputStream = socket.getInputStream();
-        this.socketOutputStream = socket.getOutputStream();
-        this.buffer = new byte[bufferSize];
+    private final int id;
+    private final DataInputStream socketInputStream;
+    private final int encodedBufferSize;
+    private final JitterBuffer jitterBuffer;
+    private final Transcoder transcoder;
+    private final BlockingQueue<Outgoing> outbound;
+    private final BlockingQueue<Outgoing> spareOutgoing = new ArrayBlockingQueue<>(OUTBOUND_CAPACITY + 4);
+    private final ByteBuffer[] gather = new ByteBuffer[2];  // The parts of a tick around the skipped frame
+    private final FramePool pongs = new FramePool(WireFrame.HEADER_SIZE + WireFrame.PONG_SIZE, 2);
+    private final Thread receiverThread;
+    private final Thread senderThread;
+    private Frame buffer;
+    private final boolean datagramMedia;
+    private final long mediaToken;
+    private volatile SocketAddress mediaAddress;
+    private volatile boolean active;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private volatile int maxOverflows = DEFAULT_MAX_OVERFLOWS;
+    private volatile long sentTicks;
+    private volatile long droppedTicks;
+    private int overflowsInARow;
+    private final Metrics.Scope metrics;
+    private final LongAdder framesIn;
+    private final LongAdder bytesIn;
+    private final LongAdder shortReads;
+    private final LongAdder framesOut;
+    private final LongAdder bytesOut;
+
+    /**
+     * @param id            the id this client puts into its {@link misc.MediaPacket}s
+     * @param datagramMedia whether this client's audio travels over UDP, as agreed in the {@link misc.Handshake}
+     * @param mediaToken    the token the client was welcomed with, which its datagrams have to carry
+     * @param clientConfig  the config the client was welcomed with, its audio is converted if it differs from {@code serverConfig}
+     * @param metrics       where this client's metrics are registered, as {@code client.<id>.*}, until it is closed
+     */
+    public ClientSocket(SocketChannel channel, int id, WuzlConfig clientConfig, WuzlConfig serverConfig, boolean datagramMedia, long mediaToken, Metrics metrics) throws IOException {
+        this.channel = channel;
+        this.socket = channel.socket();
+        this.id = id;
+        this.socketInputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.encodedBufferSize = clientConfig.encodedBufferSize();
+        this.datagramMedia = datagramMedia;
+        this.mediaToken = mediaToken;
+        this.jitterBuffer = new JitterBuffer(clientConfig);
+        this.transcoder = new Transcoder(clientConfig, serverConfig);
+        this.outbound = new ArrayBlockingQueue<>(OUTBOUND_CAPACITY);
+
+        while (spareOutgoing.offer(new Outgoing())) {
+            // Every tick in the queue, the one being written and the ones being queued
+        }
+
+        this.receiverThread = new Thread(this::receiveLoop, "receiver-" + socket.getRemoteSocketAddress());
+        this.senderThread = new Thread(this::sendLoop, "sender-" + socket.getRemoteSocketAddress());
         this.active = true;
+        this.metrics = metrics.scope("client." + id);
+        this.framesIn = this.metrics.counter("frames_in");
+        this.bytesIn = this.metrics.counter("bytes_in");
+        this.shortReads = this.metrics.counter("short_reads");
+        this.framesOut = this.metrics.counter("frames_out");
+        this.bytesOut = this.metrics.counter("bytes_out");
+        this.metrics.gauge("outbound_depth", outbound::size);
+        this.metrics.gauge("dropped_ticks", () -> droppedTicks);
+        this.metrics.gauge("jitter_buffer_depth", jitterBuffer::depth);
+        this.metrics.gauge("jitter_buffer_target_depth", jitterBuffer::targetDepth);
+        this.metrics.gauge("underruns", jitterBuffer::underruns);
+        this.metrics.gauge("overruns", jitterBuffer::overruns);
+        this.metrics.gauge("late_frames", jitterBuffer::lateFrames);
+        this.metrics.gauge("lost_frames", jitterBuffer::lostFrames);
+        this.metrics.gauge("allocated_frames", jitterBuffer::allocatedFrames);
+    }
+
+    /**
+     * A client whose audio travels over TCP.
+     */
+    public ClientSocket(SocketChannel channel, int id, WuzlConfig clientConfig, WuzlConfig serverConfig, Metrics metrics) throws IOException {
+        this(channel, id, clientConfig, serverConfig, false, 0, metrics);
+    }
+
+    public ClientSocket(SocketChannel channel, int id, WuzlConfig config, Metrics metrics) throws IOException {
+        this(channel, id, config, config, metrics);
+    }
+
+    public ClientSocket(SocketChannel channel, int id, WuzlConfig config) throws IOException {
+        this(channel, id, config, new Metrics());
+    }
+
+
+    /**
+     * Starts the receiver and sender thread of this client.
+     * From now on, neither {@link #pollBuffer()} nor {@link #send(Frame)} block on the network,
+     * so a slow client can not stall anyone else.
+     */
+    public void start() {
+        receiverThread.setDaemon(true);
+        senderThread.setDaemon(true);
+        receiverThread.start();
+        senderThread.start();
+    }
+
+    /**
+     * Takes the next frame of this client out of its {@link JitterBuffer}, without waiting.
+     * The frame is available through {@link #getBuffer()} afterwards, which returns {@code null} if the client is silent.
+     * It is already converted to the server's format, see {@link Transcoder}.
+     * The frame of the previous poll is released.
+     *
+     * @return whether a frame is available
+     */
+    public boolean pollBuffer() {
+        if (buffer != null) {
+            buffer.release();
+        }
+
+        Frame frame = jitterBuffer.poll();
+
+        if (frame == null) {
+            transcoder.resetInput();
+            buffer = null;
+            return false;
+        }
+
+        buffer = transcoder.toServer(frame);
+        return true;
+    }
+
+    /**
+     * Drops the frame taken by the last {@link #pollBuffer()}, so the client counts as silent in this tick.
+     */
+    public void discardBuffer() {
+        if (buffer != null) {
+            buffer.release();
+            buffer = null;
+        }
+    }
+
+    /**
+     * Queues one tick to be sent with a single write, without waiting for the network.
+     * If the client can not keep up, the {@link OverflowPolicy} decides which tick is dropped as a whole,
+     * so the stream never gets out of sync.
+     * Called by one thread at a time, the tick of the client's room.
+     *
+     * @param tick the {@link WireFrame}s of one tick, ready to be written. The reference to it is taken over,
+     *             it is released once it was sent or dropped. Other clients may send the same tick at the same time
+     * @return {@code false} if the client is not active anymore
+     */
+    public boolean send(Frame tick) {
+        return send(tick, 0, 0);
+    }
+
+    /**
+     * Like {@link #send(Frame)}, but leaves out the bytes from {@code skipFrom} to {@code skipTo},
+     * so many listeners can share one tick that holds everyone's frames, each without its own.
+     *
+     * @param skipFrom the offset of the first frame not to send
+     * @param skipTo   the offset after the last frame not to send, equal to {@code skipFrom} to send everything
+     */
+    public boolean send(Frame tick, int skipFrom, int skipTo) {
+        if (!active) {
+            tick.release();
+            return false;
+        }
+
+        Outgoing outgoing = outgoing(tick, skipFrom, skipTo);
+
+        if (outbound.offer(outgoing)) {
+            overflowsInARow = 0;
+
+            if (!active) {
+                releaseOutbound();  // Closed in the meantime, nobody is going to send it
+                return false;
+            }
+
+            return true;
+        }
+
+        overflowsInARow++;
+        droppedTicks++;
+
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                Outgoing oldest = outbound.poll();
+
+                if (oldest != null) {
+                    recycle(oldest);
+                }
+
+                if (!outbound.offer(outgoing)) {
+                    recycle(outgoing);
+                    droppedTicks++;  // Only if the sender thread died in between
+                }
+            }
+            case DROP_NEWEST -> recycle(outgoing);
+            case DISCONNECT -> {
+                recycle(outgoing);
+
+                if (overflowsInARow >= maxOverflows) {
+                    System.err.println("Client too slow, disconnecting: " + this);
+                    active = false;
+                }
+            }
+        }
+
+        return active;
     }
 
+    /**
+     * Called for every datagram with the id of this client, the address of the latest accepted datagram is where the mix is sent to.
+     * Only datagrams with the client's token from the host of its TCP connection are accepted,
+     * so nobody else can redirect the client's audio or talk in its name.
+     *
+     * @return whether the datagram was accepted
+     */
+    public boolean receiveDatagram(InetSocketAddress sender, long token, long sequence, byte[] payload, int offset, int length) {
+        if (!datagramMedia || token != mediaToken || !sender.getAddress().equals(socket.getInetAddress())) {
+            return false;
+        }
+
+        mediaAddress = sender;
+        framesIn.increment();
+        bytesIn.add(misc.MediaPacket.HEADER_SIZE + length);
+        jitterBuffer.write(sequence, payload, offset, length);
+        return true;
+    }
+
+    private void receiveLoop() {
+        ByteBuffer header = ByteBuffer.allocate(WireFrame.HEADER_SIZE);
+        byte[] payload = new byte[encodedBufferSize];
 
-    public int receiveBuffer(boolean logDisconnect) {
         try {
-            return socketInputStream.read(buffer);
+            while (active) {
+                socketInputStream.readFully(header.array());
+                int length = WireFrame.payloadLength(header);
+
+                if (length < 0 || length > payload.length)
+                    throw new StreamCorruptedException("Invalid payload length: " + length);
+
+                if (socketInputStream.available() < length) {
+                    shortReads.increment();  // The payload did not arrive with its header, so the read below waits for it
+                }
+
+                socketInputStream.readFully(payload, 0, length);
+                framesIn.increment();
+                bytesIn.add(WireFrame.HEADER_SIZE + length);
+
+                long sequence = Integer.toUnsignedLong(WireFrame.sequence(header));
+
+                switch (WireFrame.type(header)) {
+                    case WireFrame.AUDIO -> jitterBuffer.write(sequence, payload, 0, length);
+                    case WireFrame.SILENCE -> jitterBuffer.writeSilence(sequence);
+                    case WireFrame.PING -> pong(header, System.nanoTime());
+                }
+            }
         } catch (IOException e) {
             active = false;
-            if (logDisconnect) printDisconnectMessage();
-            return Integer.MIN_VALUE;
         }
     }
 
-    public boolean sendBuffer(byte[] buffer, boolean logDisconnect) {
+    /**
+     * Answers between two ticks, the overflow policy does not apply, a pong that does not fit is dropped like a lost packet.
+     *
+     * @param receivedAt when the header of the ping was read
+     */
+    private void pong(ByteBuffer ping, long receivedAt) {
+        Frame pong = pongs.acquire();
+        ByteBuffer out = pong.buffer();
+        WireFrame.writeHeader(out, WireFrame.PONG, (byte) 0, misc.MediaPacket.SERVER_ID, WireFrame.sequence(ping), 0, WireFrame.PONG_SIZE);
+        out.putLong(WireFrame.timestamp(ping));
+        out.putLong(receivedAt);
+        out.putInt(jitterBuffer.depth());
+
+        Outgoing outgoing = outgoing(pong.setLength(out.position()), 0, 0);
+
+        if (!outbound.offer(outgoing)) {
+            recycle(outgoing);
+        }
+    }
+
+    private Outgoing outgoing(Frame tick, int skipFrom, int skipTo) {
+        Outgoing outgoing = spareOutgoing.poll();
+
+        if (outgoing == null) {
+            outgoing = new Outgoing();  // Only if pongs and ticks pile up at the same time
+        }
+
+        outgoing.tick = tick;
+        outgoing.skipFrom = skipFrom;
+        outgoing.skipTo = skipTo;
+        return outgoing;
+    }
+
+    /**
+     * Releases the tick, it was sent or dropped.
+     */
+    private void recycle(Outgoing outgoing) {
+        outgoing.tick.release();
+        outgoing.tick = null;
+        spareOutgoing.offer(outgoing);
+    }
+
+    /**
+     * Releases the ticks still queued, once nobody is going to send them anymore.
+     */
+    private void releaseOutbound() {
+        Outgoing outgoing;
+
+        while ((outgoing = outbound.poll()) != null) {
+            recycle(outgoing);
+        }
+    }
+
+    private void sendLoop() {
+        Outgoing outgoing = null;
+
         try {
-            socketOutputStream.write(buffer);
-            return true;
+            while (active) {
+                outgoing = outbound.take();
+                ByteBuffer bytes = outgoing.tick.view();
+                boolean pong = WireFrame.type(bytes) == WireFrame.PONG;
+                boolean skipping = outgoing.skipTo > outgoing.skipFrom;
+                framesOut.add(WireFrame.countFrames(bytes) - (skipping ? 1 : 0));
+
+                if (pong) {
+                    WireFrame.setTimestamp(bytes, System.nanoTime());  // Time spent in the queue does not count as network
+                }
+
+                if (skipping) {
+                    gather[0] = bytes.limit(outgoing.skipFrom);
+                    gather[1] = outgoing.tick.view().position(outgoing.skipTo);
+
+                    while (gather[1].hasRemaining()) {
+                        bytesOut.add(channel.write(gather));
+                    }
+
+                    gather[0] = null;
+                    gather[1] = null;
+                } else {
+                    while (bytes.hasRemaining()) {
+                        bytesOut.add(channel.write(bytes));
+                    }
+                }
+
+                recycle(outgoing);
+                outgoing = null;
+
+                if (!pong) {
+                    sentTicks++;
+                }
+            }
         } catch (IOException e) {
             active = false;
-            if (logDisconnect) printDisconnectMessage();
-            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (outgoing != null) {
+                recycle(outgoing);  // The tick that was being written
+            }
+
+            releaseOutbound();
         }
     }
 
@@ -181,8 +519,21 @@ public class ClientSocket {
         socket.setReuseAddress(on);
     }
 
+    /**
+     * Releases the ticks that were not sent yet and the frame of the last {@link #pollBuffer()},
+     * so the pools they came from get them back. The room closes its clients on its tick thread.
+     */
     public synchronized void close() throws IOException {
-        socket.close();
+        active = false;
+        senderThread.interrupt();
+        metrics.removeAll();
+
+        try {
+            socket.close();
+        } finally {
+            releaseOutbound();
+            discardBuffer();
+        }
     }
 
     public void shutdownInput() throws IOException {
@@ -194,10 +545,40 @@ public class ClientSocket {
     }
 
 
-    public byte[] getBuffer() {
+    /**
+     * @return the frame taken by the last {@link #pollBuffer()}, or {@code null} if the client is silent.
+     * It is valid until the next poll, hold a {@link Frame#retain() reference} to keep it longer
+     */
+    public Frame getBuffer() {
         return buffer;
     }
 
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return whether this client's audio travels over UDP
+     */
+    public boolean isDatagramMedia() {
+        return datagramMedia;
+    }
+
+    /**
+     * @return the address datagrams of this client come from, or {@code null} if none arrived yet
+     */
+    public SocketAddress getMediaAddress() {
+        return mediaAddress;
+    }
+
+    public JitterBuffer getJitterBuffer() {
+        return jitterBuffer;
+    }
+
+    public Transcoder getTranscoder() {
+        return transcoder;
+    }
+
     public boolean isConnected() {
         return socket.isConnected();
     }
@@ -218,6 +599,43 @@ public class ClientSocket {
         return socket.isOutputShutdown();
     }
 
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @param maxOverflows how many ticks in a row may overflow before {@link OverflowPolicy#DISCONNECT} disconnects the client
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy, int maxOverflows) {
+        this.overflowPolicy = overflowPolicy;
+        this.maxOverflows = maxOverflows;
+    }
+
+    /**
+     * @return the number of ticks waiting to be sent to this client
+     */
+    public int getOutboundDepth() {
+        return outbound.size();
+    }
+
+    public int getOutboundCapacity() {
+        return OUTBOUND_CAPACITY;
+    }
+
+    /**
+     * @return the number of ticks written to this client's connection
+     */
+    public long getSentTicks() {
+        return sentTicks;
+    }
+
+    /**
+     * @return the number of ticks dropped because this client's outbound queue was full
+     */
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
     public boolean isActive() {
         return active;
 
@@ -249,4 +667,14 @@ public class ClientSocket {
         return socket.toString();
     }
 
+
+    /**
+     * A tick in the outbound queue, reused once it was sent or dropped, so queueing a tick does not allocate.
+     */
+    private static final class Outgoing {
+        private Frame tick;
+        private int skipFrom;
+        private int skipTo;
+    }
+
 }
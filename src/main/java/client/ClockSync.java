@@ -0,0 +1,77 @@
+package client;
+
+/**
+ * Estimates the round trip time to the server and the offset of the server's clock from {@link misc.WireFrame#PING} probes,
+ * the same way NTP does: a probe sent at {@code t0}, received by the server at {@code t1}, answered at {@code t2}
+ * and received back at {@code t3} took {@code (t3 - t0) - (t2 - t1)} on the network,
+ * and the server's clock is {@code ((t1 - t0) + (t2 - t3)) / 2} ahead, assuming both directions took equally long.
+ * <p>
+ * The probe with the shortest round trip of the last {@link #WINDOW} is trusted most, because it waited in the fewest queues,
+ * so its offset is the least skewed by one direction being slower than the other.
+ * <p>
+ * Thread-safe.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class ClockSync {
+    public static final int WINDOW = 8;  // Probes
+
+    private final long[] rtts = new long[WINDOW];
+    private final long[] offsets = new long[WINDOW];
+    private int probes;
+    private long rttNanos;
+    private long offsetNanos;
+
+
+    /**
+     * @param sent           {@code t0}, when the client sent the probe, on the client's clock
+     * @param serverReceived {@code t1}, on the server's clock
+     * @param serverSent     {@code t2}, on the server's clock
+     * @param received       {@code t3}, when the answer arrived, on the client's clock
+     */
+    public synchronized void probe(long sent, long serverReceived, long serverSent, long received) {
+        int slot = probes++ % WINDOW;
+        rtts[slot] = Math.max(0, (received - sent) - (serverSent - serverReceived));
+        offsets[slot] = ((serverReceived - sent) + (serverSent - received)) / 2;
+        rttNanos = rtts[slot];
+
+        int best = 0;
+
+        for (int i = 1; i < Math.min(probes, WINDOW); i++) {
+            if (rtts[i] < rtts[best]) {
+                best = i;
+            }
+        }
+
+        offsetNanos = offsets[best];
+    }
+
+    /**
+     * @param serverTime a time on the server's clock
+     * @return the same time on the client's clock
+     */
+    public synchronized long toLocal(long serverTime) {
+        return serverTime - offsetNanos;
+    }
+
+
+    /**
+     * @return the round trip time of the latest probe
+     */
+    public synchronized long rttNanos() {
+        return rttNanos;
+    }
+
+    /**
+     * @return how far the server's clock is ahead of the client's, 0 before the first probe
+     */
+    public synchronized long offsetNanos() {
+        return offsetNanos;
+    }
+
+    public synchronized boolean isSynchronized() {
+        return probes > 0;
+    }
+
+}
@@ -0,0 +1,39 @@
+package client;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets synthetic sources deliver one frame per frame duration, like a real input device would.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+class FramePacer {
+    private final long frameDurationNanos;
+    private long deadline;
+
+    FramePacer(long frameDurationNanos) {
+        this.frameDurationNanos = frameDurationNanos;
+    }
+
+
+    /**
+     * Blocks until the current frame would have been recorded completely.
+     * If the caller fell behind by more than a frame, the schedule restarts instead of bursting to catch up.
+     */
+    void awaitNextFrame() {
+        long now = System.nanoTime();
+
+        if (deadline == 0 || now - deadline > frameDurationNanos) {
+            deadline = now;
+        }
+
+        deadline += frameDurationNanos;
+        LockSupport.parkNanos(deadline - now);
+
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(deadline - System.nanoTime());
+        }
+    }
+
+}
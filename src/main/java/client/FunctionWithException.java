@@ -0,0 +1,12 @@
+package client;
+
+/**
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+@FunctionalInterface
+public interface FunctionWithException<T, R> {
+
+    R apply(T t) throws Exception;
+
+}
@@ -0,0 +1,58 @@
+package client;
+
+import misc.PcmSamples;
+import misc.WuzlConfig;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * An {@link AudioSource} that synthesizes a {@link SignalGenerator} waveform in real time, for clients without an input device.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class GeneratorSource implements AudioSource {
+    private final SignalGenerator generator;
+    private final double frequency;
+    private final double amplitude;
+    private final AudioFormat audioFormat;
+    private final int[] samples;
+    private final FramePacer pacer;
+    private double phase;
+
+    /**
+     * @param frequency in Hz
+     * @param amplitude relative to full scale, in [0, 1]
+     */
+    public GeneratorSource(SignalGenerator generator, double frequency, double amplitude, WuzlConfig config) {
+        this.generator = generator;
+        this.frequency = frequency;
+        this.amplitude = amplitude;
+        this.audioFormat = config.audioFormat();
+        this.samples = new int[PcmSamples.sampleCount(audioFormat, config.bufferSize())];
+        this.pacer = new FramePacer(config.frameDurationNanos());
+    }
+
+
+    @Override
+    public void read(byte[] buffer) {
+        int channels = audioFormat.getChannels();
+        double step = frequency / audioFormat.getSampleRate();
+        double scale = amplitude * PcmSamples.maxValue(audioFormat);
+        int count = Math.min(samples.length, PcmSamples.sampleCount(audioFormat, buffer.length));
+
+        for (int i = 0; i < count; i += channels) {
+            int value = (int) (generator.sample(phase) * scale);
+
+            for (int c = 0; c < channels && i + c < count; c++) {
+                samples[i + c] = value;
+            }
+
+            phase = (phase + step) % 1.0;
+        }
+
+        PcmSamples.encode(samples, count, buffer, audioFormat);
+        pacer.awaitNextFrame();
+    }
+
+}
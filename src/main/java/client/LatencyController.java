@@ -0,0 +1,104 @@
+package client;
+
+/**
+ * Picks the recycle threshold from how regularly frames arrive, and the {@link SignalRecycler} from how much audio stays queued.
+ * <p>
+ * The inter-arrival jitter is estimated like in RFC 3550: the deviation of every gap between two frames from the
+ * frame duration is smoothed with a gain of 1/16. The target latency is one frame plus {@link #JITTER_MARGIN} times
+ * that jitter, so a steady link plays almost immediately, while a bursty one keeps enough audio queued to ride out
+ * the gaps. Above the target the backlog is sped up, and only if it is far above it, frames are discarded.
+ * <p>
+ * The queue depth is smoothed as well, with a gain of 1/32. A backlog above the target is only recycled if the smoothed depth
+ * is above the target too: with bursty arrivals the queue peaks after every burst and drains by itself in the next gap,
+ * speeding up those peaks would only make the next gap run dry.
+ * <p>
+ * {@link #frameArrived(long)} is called by the receiver, everything else may be called from any thread.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class LatencyController {
+    private static final float JITTER_GAIN = 1 / 16.0f;
+    private static final float JITTER_MARGIN = 3.0f;
+    private static final float DISCARD_ABOVE_FRAMES = 2.0f;  // Backlog beyond the threshold that is too much to speed up
+    private static final float QUEUE_GAIN = 1 / 32.0f;
+
+    private final long frameDurationNanos;
+    private final int bufferSize;
+    private final int maxFrames;
+    private long lastArrival = -1;
+    private volatile float jitterNanos;
+    private volatile float averageQueuedBytes;
+
+    /**
+     * @param maxFrames the most frames that can be queued for playback, the target latency never exceeds it
+     */
+    public LatencyController(long frameDurationNanos, int bufferSize, int maxFrames) {
+        this.frameDurationNanos = frameDurationNanos;
+        this.bufferSize = bufferSize;
+        this.maxFrames = maxFrames;
+    }
+
+
+    /**
+     * Receiver only. Called whenever a frame was received.
+     */
+    public void frameArrived(long nanoTime) {
+        if (lastArrival != -1) {
+            float deviation = Math.abs(nanoTime - lastArrival - frameDurationNanos);
+            jitterNanos += (deviation - jitterNanos) * JITTER_GAIN;
+        }
+
+        lastArrival = nanoTime;
+    }
+
+    /**
+     * Called whenever a frame is about to be played.
+     */
+    public void queued(int queuedBytes) {
+        averageQueuedBytes += (queuedBytes - averageQueuedBytes) * QUEUE_GAIN;
+    }
+
+    /**
+     * @return the amount of queued playback audio in nanoseconds the playback aims for
+     */
+    public long targetLatencyNanos() {
+        float latency = frameDurationNanos + JITTER_MARGIN * jitterNanos;
+        return (long) Math.min(latency, (float) frameDurationNanos * (maxFrames - 1));
+    }
+
+    /**
+     * @return the amount of queued playback audio in bytes above which the backlog is recycled
+     */
+    public float threshold() {
+        return (float) targetLatencyNanos() / frameDurationNanos * bufferSize;
+    }
+
+    /**
+     * @return how to recycle a backlog of {@code queuedBytes}, {@link SignalRecycler#DELAY} if it is only a peak the queue drains from by itself
+     */
+    public SignalRecycler strategy(int queuedBytes) {
+        float threshold = threshold();
+
+        if (queuedBytes - threshold > DISCARD_ABOVE_FRAMES * bufferSize) {
+            return SignalRecycler.DISCARD;
+        }
+
+        return averageQueuedBytes > threshold
+                ? SignalRecycler.SPEED_UP
+                : SignalRecycler.DELAY;
+    }
+
+
+    public long jitterNanos() {
+        return (long) jitterNanos;
+    }
+
+    /**
+     * @return the smoothed amount of audio queued for playback in bytes
+     */
+    public float averageQueuedBytes() {
+        return averageQueuedBytes;
+    }
+
+}
@@ -0,0 +1,37 @@
+package client;
+
+/**
+ * Where the mouth-to-ear latency of a {@link WuzlClient} goes, stage by stage, all in nanoseconds.
+ * The network is taken as half of the round trip each way, the clocks of client and server are never compared directly.
+ *
+ * @param capture            recording a frame, and the recorded audio the device holds back
+ * @param sendQueue          captured frames waiting to be sent
+ * @param network            one way between client and server
+ * @param serverJitterBuffer frames of this client the server holds back
+ * @param jitterBuffer       received frames waiting to be played
+ * @param playbackDevice     audio written to the output device but not played yet
+ * @param rtt                the round trip time to the server
+ * @param clockOffset        how far the server's clock is ahead of the client's
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public record LatencyReport(long capture, long sendQueue, long network, long serverJitterBuffer, long jitterBuffer, long playbackDevice, long rtt, long clockOffset) {
+
+    /**
+     * @return the estimated mouth-to-ear latency, the network counts twice because the audio goes to the server and back
+     */
+    public long totalNanos() {
+        return capture + sendQueue + 2 * network + serverJitterBuffer + jitterBuffer + playbackDevice;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("total %.1f ms: capture %.1f, send queue %.1f, network 2 x %.1f, server jitter buffer %.1f, jitter buffer %.1f, playback device %.1f (rtt %.1f ms, clock offset %.1f ms)",
+                millis(totalNanos()), millis(capture), millis(sendQueue), millis(network), millis(serverJitterBuffer), millis(jitterBuffer), millis(playbackDevice), millis(rtt), millis(clockOffset));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+}
@@ -0,0 +1,166 @@
+package client;
+
+import misc.Handshake;
+import misc.Histogram;
+import misc.WuzlConfig;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connects N headless clients to a {@link server.WuzlServer} to find out how many clients a server can handle.
+ * Every client sends a synthetic signal (or a WAV file) in real time and throws away what it receives,
+ * only measuring how regularly and how late frames arrive.
+ * The end-to-end latency of a frame is taken from the server's timestamp, moved to the client's clock by its {@link ClockSync},
+ * so it is also right if the load generator runs on another machine than the server.
+ * <p>
+ * Clients are spread evenly across the given number of rooms.
+ * <p>
+ * Usage: {@code LoadGenerator [host] [port] [clients] [seconds] [sine|noise|silence|<file.wav>] [rooms]}
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class LoadGenerator {
+    private final String host;
+    private final int port;
+    private final int clientCount;
+    private final String signal;
+    private final int roomCount;
+    private final List<WuzlClient> clients = new ArrayList<>();
+    private final Histogram frameIntervals = new Histogram();  // Microseconds
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder failedClients = new LongAdder();
+
+    public LoadGenerator(String host, int port, int clientCount, String signal, int roomCount) {
+        this.host = host;
+        this.port = port;
+        this.clientCount = clientCount;
+        this.signal = signal;
+        this.roomCount = roomCount;
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : WuzlConfig.defaultSettings().communicationPort();
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        String signal = args.length > 4 ? args[4] : "sine";
+        int rooms = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+
+        new LoadGenerator(host, port, clients, signal, rooms).run(seconds, System.out);
+    }
+
+
+    public void run(int seconds, PrintStream out) throws Exception {
+        for (int i = 0; i < clientCount; i++) {
+            connect(i);
+        }
+
+        out.printf("%d clients connected to %s:%d in %d rooms%n", clients.size(), host, port, roomCount);
+        long start = System.nanoTime();
+
+        for (int second = 1; second <= seconds; second++) {
+            long before = framesReceived.sum();
+            TimeUnit.SECONDS.sleep(1);
+            out.printf("%3d s: %6d frames/s, %d clients failed%n", second, framesReceived.sum() - before, failedClients.sum());
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        for (WuzlClient client : clients) {
+            client.close();
+        }
+
+        printReport(out, elapsed);
+    }
+
+    private void connect(int index) throws Exception {
+        String room = roomCount <= 1 ? Handshake.DEFAULT_ROOM : "room-" + index % roomCount;
+        WuzlClient client = new WuzlClient(host, port, room, config -> createSource(index, config), config -> new MeasuringSink());
+        clients.add(client);
+
+        Thread thread = new Thread(() -> {
+            try {
+                client.start();
+            } catch (Exception e) {
+                if (!client.getSocket().isClosed()) {
+                    failedClients.increment();
+                }
+            }
+        }, "load-client-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private AudioSource createSource(int index, WuzlConfig config) throws Exception {
+        return switch (signal) {
+            case "sine" -> new GeneratorSource(SignalGenerator.SINE, 220.0 + 20.0 * index, 0.2, config);
+            case "noise" -> new GeneratorSource(SignalGenerator.NOISE, 0.0, 0.05, config);
+            case "silence" -> new GeneratorSource(SignalGenerator.SILENCE, 0.0, 0.0, config);
+            default -> new WavFileSource(new File(signal), config);
+        };
+    }
+
+    private void printReport(PrintStream out, double elapsedSeconds) {
+        long frames = framesReceived.sum();
+        long lateDatagrams = clients.stream().mapToLong(WuzlClient::getLateDatagrams).sum();
+        long recycledFrames = clients.stream().mapToLong(WuzlClient::getRecycledFrames).sum();
+        long droppedFrames = clients.stream().mapToLong(client -> client.getDroppedCapturedFrames() + client.getDroppedReceivedFrames()).sum();
+        long suppressedFrames = clients.stream().mapToLong(WuzlClient::getSuppressedFrames).sum();
+        double expectedInterval = clients.isEmpty() ? 0 : clients.get(0).getConfig().frameDurationNanos() / 1e6;
+        double targetLatency = clients.stream().mapToLong(WuzlClient::getTargetLatencyNanos).average().orElse(0) / 1e6;
+
+        out.println();
+        out.printf("Clients:          %d (%d failed)%n", clients.size(), failedClients.sum());
+        out.printf("Frames received:  %d (%.1f frames/s, %.1f per client)%n", frames, frames / elapsedSeconds, frames / elapsedSeconds / Math.max(1, clients.size()));
+        out.printf("Dropped:          %d late datagrams, %d recycled frames, %d ring overflows%n", lateDatagrams, recycledFrames, droppedFrames);
+        out.printf("Not sent:         %d silent frames%n", suppressedFrames);
+        out.printf("Target latency:   %.2f ms on average%n", targetLatency);
+        out.printf("Frame interval:   expected %.2f ms, mean %.2f ms%n", expectedInterval, frameIntervals.mean() / 1e3);
+
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            out.printf("          p%-5s  %.2f ms%n", percentile, frameIntervals.percentile(percentile) / 1e3);
+        }
+
+        out.printf("          max     %.2f ms%n", frameIntervals.max() / 1e3);
+
+        Histogram endToEnd = new Histogram();  // Microseconds
+        clients.forEach(client -> endToEnd.merge(client.getEndToEndLatency()));
+        double mouthToEar = clients.stream().mapToLong(client -> client.getLatency().totalNanos()).average().orElse(0) / 1e6;
+
+        out.printf("End to end:       server to playback, mean %.2f ms, mouth to ear about %.2f ms%n", endToEnd.mean() / 1e3, mouthToEar);
+
+        for (double percentile : new double[]{50, 99, 99.9}) {
+            out.printf("          p%-5s  %.2f ms%n", percentile, endToEnd.percentile(percentile) / 1e3);
+        }
+
+        out.printf("          max     %.2f ms%n", endToEnd.max() / 1e3);
+    }
+
+
+    /**
+     * Records the time between two frames, a perfectly regular stream has an interval of exactly one frame duration.
+     */
+    private class MeasuringSink implements AudioSink {
+        private long lastWrite;
+
+        @Override
+        public void write(byte[] buffer, int length) {
+            long now = System.nanoTime();
+
+            if (lastWrite != 0) {
+                frameIntervals.record((now - lastWrite) / 1000);
+            }
+
+            lastWrite = now;
+            framesReceived.increment();
+        }
+    }
+
+}
@@ -0,0 +1,25 @@
+package client;
+
+/**
+ * What happens to a tick of audio for a client whose outbound queue is full, because it does not read fast enough.
+ * Ticks are always dropped as a whole, so the stream never gets out of sync.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public enum OverflowPolicy {
+    /**
+     * Drops the oldest queued tick to make room, so the client falls behind by at most the queue capacity.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drops the new tick, the client keeps playing what was queued.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drops the new tick, and disconnects the client once too many ticks in a row overflowed.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,181 @@
+package client;
+
+import misc.FrameRing;
+import misc.PcmSamples;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * The consumer side of the playback {@link FrameRing}, which the {@link SignalRecycler}s take their frames from.
+ * <p>
+ * Besides reading and skipping frames, it can play the queued audio faster without changing its pitch
+ * ({@link #readFaster(byte[])}), using a simplified WSOLA (waveform similarity overlap-add):
+ * a piece of the input is cut out of every frame, and the splice is placed where the waveforms before and after it
+ * are most similar, then cross-faded, so the cut is inaudible.
+ * All buffers are allocated up front. Only the playback thread may use an instance.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class PlaybackBuffer {
+    private final FrameRing ring;
+    private final AudioFormat audioFormat;
+    private final int channels;
+    private final int frameSamples;    // Interleaved samples per frame
+    private final int dropSamples;     // How many samples are cut out per output frame, 1/4 of a frame = 1.25x speed
+    private final int overlapSamples;  // Length of the cross-fade
+    private final int searchSamples;   // How far the splice may move to find a similar waveform
+    private final int[] pending;
+    private final int[] output;
+    private int pendingCount;
+
+    public PlaybackBuffer(FrameRing ring, AudioFormat audioFormat, int bufferSize) {
+        this.ring = ring;
+        this.audioFormat = audioFormat;
+        this.channels = audioFormat.getChannels();
+        this.frameSamples = PcmSamples.sampleCount(audioFormat, bufferSize);
+        this.dropSamples = alignToChannels(frameSamples / 4);
+        this.overlapSamples = alignToChannels(frameSamples / 8);
+        this.searchSamples = alignToChannels(frameSamples / 16);
+        this.pending = new int[frameSamples * 3];
+        this.output = new int[frameSamples];
+    }
+
+
+    /**
+     * Reads the next frame at normal speed.
+     *
+     * @return the number of bytes written to {@code target}, 0 if nothing is queued
+     */
+    public int read(byte[] target) {
+        if (pendingCount == 0) {
+            byte[] frame = ring.peek();
+
+            if (frame == null)
+                return 0;
+
+            int length = ring.peekLength();
+            System.arraycopy(frame, 0, target, 0, length);
+            ring.release();
+            return length;
+        }
+
+        // Left over from playing faster, so the frame boundaries are shifted
+        if (!fill(frameSamples))
+            return 0;
+
+        System.arraycopy(pending, 0, output, 0, frameSamples);
+        consume(frameSamples);
+        return PcmSamples.encode(output, frameSamples, target, audioFormat);
+    }
+
+    /**
+     * Throws away the next frame.
+     */
+    public void skip() {
+        if (pendingCount > 0) {
+            consume(Math.min(frameSamples, pendingCount));
+        } else if (ring.peek() != null) {
+            ring.release();
+        }
+    }
+
+    /**
+     * Reads the next frame at 1.25x speed with the same pitch, consuming 1.25 frames of queued audio.
+     * Falls back to {@link #read(byte[])} if not enough audio is queued.
+     *
+     * @return the number of bytes written to {@code target}, 0 if nothing is queued
+     */
+    public int readFaster(byte[] target) {
+        if (!fill(frameSamples + dropSamples + searchSamples))
+            return read(target);
+
+        int splice = alignToChannels(frameSamples / 2);
+        int headEnd = splice - overlapSamples;
+        int offset = dropSamples + bestShift(headEnd);
+
+        System.arraycopy(pending, 0, output, 0, headEnd);
+
+        int fadeLength = Math.max(overlapSamples / channels, 1);
+
+        for (int i = 0; i < overlapSamples; i++) {
+            float fade = (float) (i / channels) / fadeLength;
+            int a = pending[headEnd + i];
+            int b = pending[headEnd + offset + i];
+            output[headEnd + i] = (int) (a + (b - a) * fade);
+        }
+
+        System.arraycopy(pending, splice + offset, output, splice, frameSamples - splice);
+        consume(frameSamples + offset);
+        return PcmSamples.encode(output, frameSamples, target, audioFormat);
+    }
+
+    /**
+     * @return the shift relative to {@link #dropSamples} in [-searchSamples, searchSamples], where the waveform after
+     * the cut-out is most similar to the one before it (maximum normalized cross-correlation)
+     */
+    private int bestShift(int headEnd) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+
+        for (int shift = -searchSamples; shift <= searchSamples; shift += channels) {
+            int start = headEnd + dropSamples + shift;
+            long correlation = 0;
+            long energy = 1;
+
+            for (int i = 0; i < overlapSamples; i++) {
+                int candidate = pending[start + i];
+                correlation += (long) pending[headEnd + i] * candidate;
+                energy += (long) candidate * candidate;
+            }
+
+            double score = correlation / Math.sqrt(energy);
+
+            if (score > bestScore) {
+                bestScore = score;
+                best = shift;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Moves frames from the ring into {@link #pending} until it holds at least {@code samples} samples.
+     *
+     * @return whether there are enough samples
+     */
+    private boolean fill(int samples) {
+        while (pendingCount < samples) {
+            byte[] frame = ring.peek();
+
+            if (frame == null || pendingCount + frameSamples > pending.length)
+                return false;
+
+            int count = PcmSamples.decode(frame, ring.peekLength(), output, audioFormat);
+            System.arraycopy(output, 0, pending, pendingCount, count);
+            pendingCount += count;
+            ring.release();
+        }
+
+        return true;
+    }
+
+    private void consume(int samples) {
+        System.arraycopy(pending, samples, pending, 0, pendingCount - samples);
+        pendingCount -= samples;
+    }
+
+    private int alignToChannels(int samples) {
+        return samples - samples % channels;
+    }
+
+
+    /**
+     * @return the amount of audio queued in bytes, including what is left over from playing faster
+     */
+    public int queuedBytes() {
+        return (ring.size() * frameSamples + pendingCount) * PcmSamples.bytesPerSample(audioFormat);
+    }
+
+}
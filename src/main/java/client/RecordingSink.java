@@ -0,0 +1,49 @@
+package client;
+
+import misc.WuzlConfig;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * An {@link AudioSink} that keeps everything it receives in memory and writes it to a WAV file when closed.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class RecordingSink implements AudioSink {
+    private final File file;
+    private final AudioFormat audioFormat;
+    private final ByteArrayOutputStream recording;
+
+    public RecordingSink(File file, WuzlConfig config) {
+        this.file = file;
+        this.audioFormat = config.audioFormat();
+        this.recording = new ByteArrayOutputStream();
+    }
+
+
+    @Override
+    public void write(byte[] buffer, int length) {
+        recording.write(buffer, 0, length);
+    }
+
+    @Override
+    public void close() {
+        byte[] audio = recording.toByteArray();
+
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(audio), audioFormat, audio.length / audioFormat.getFrameSize())) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
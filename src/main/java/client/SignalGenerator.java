@@ -0,0 +1,33 @@
+package client;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Synthetic waveforms for headless clients, see {@link GeneratorSource}.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public enum SignalGenerator {
+    SINE(phase -> Math.sin(2 * Math.PI * phase)),
+
+    NOISE(phase -> ThreadLocalRandom.current().nextDouble(-1.0, 1.0)),
+
+    SILENCE(phase -> 0.0);
+
+    private final DoubleUnaryOperator waveform;
+
+    SignalGenerator(DoubleUnaryOperator waveform) {
+        this.waveform = waveform;
+    }
+
+    /**
+     * @param phase the position within one period, in [0, 1)
+     * @return the value at this phase, in [-1, 1]
+     */
+    public double sample(double phase) {
+        return waveform.applyAsDouble(phase);
+    }
+
+}
@@ -0,0 +1,48 @@
+package client;
+
+import misc.WuzlConfig;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * An {@link AudioSource} that plays a WAV file in a loop, in real time.
+ * The file is converted to the negotiated format once, {@link AudioSystem} can not change the sample rate though.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class WavFileSource implements AudioSource {
+    private final byte[] audio;
+    private final FramePacer pacer;
+    private int position;
+
+    public WavFileSource(File file, WuzlConfig config) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream original = AudioSystem.getAudioInputStream(file);
+             AudioInputStream converted = AudioSystem.getAudioInputStream(config.audioFormat(), original)) {
+            this.audio = converted.readAllBytes();
+        }
+
+        if (audio.length == 0)
+            throw new IOException("No audio in " + file);
+
+        this.pacer = new FramePacer(config.frameDurationNanos());
+    }
+
+
+    @Override
+    public void read(byte[] buffer) {
+        for (int written = 0; written < buffer.length; ) {
+            int n = Math.min(buffer.length - written, audio.length - position);
+            System.arraycopy(audio, position, buffer, written, n);
+            written += n;
+            position = (position + n) % audio.length;
+        }
+
+        pacer.awaitNextFrame();
+    }
+
+}
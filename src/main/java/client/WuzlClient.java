@@ -1,13 +1,31 @@
 package client;
 
+import misc.AudioCodec;
+import misc.FrameCodec;
+import misc.FrameRing;
+import misc.Handshake;
+import misc.Histogram;
+import misc.MediaPacket;
+import misc.Metrics;
+import misc.Mixer;
+import misc.PcmSamples;
+import misc.SerializableAudioFormat;
+import misc.VoiceActivityDetector;
+import misc.WireFrame;
 import misc.WuzlConfig;
+import server.RunnableWithException;
 
-import javax.sound.sampled.DataLine;
 import javax.sound.sampled.LineUnavailableException;
-import javax.sound.sampled.SourceDataLine;
-import javax.sound.sampled.TargetDataLine;
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * @author : Emilio Zottel (4AHIF)
@@ -17,33 +35,173 @@ public class WuzlClient implements AutoCloseable {
     private static final String HOST = "localhost";
     //private static final String HOST = "62.47.156.38";
     private static final int PORT = 27005;
+    private static final int RING_CAPACITY = 8;  // Frames
+    private static final double COMFORT_NOISE_LEVEL = 0.002;  // Of full scale, about -54 dB
+    private static final long PROBE_INTERVAL_NANOS = 1_000_000_000L;
+    private static final long KEEPALIVE_NANOS = 1_000_000_000L;  // Well within the UDP timeout of common NATs
+    private static final int REPORT_EVERY = 10;  // Probes
+    private static final float STAGE_GAIN = 1 / 16.0f;
 
     private final Socket clientSocket;
-    private final InputStream socketInputStream;
+    private final DataInputStream socketInputStream;
     private final OutputStream socketOutputStream;
-    private final TargetDataLine inputDevice;
-    private final SourceDataLine outputDevice;
+    private final AudioSource inputDevice;
+    private final AudioSink outputDevice;
     private final WuzlConfig config;
-    private SignalRecycler signalRecycler;
-    private float recycleThreshold;
+    private final int id;
+    private final long mediaToken;
+    private final FrameCodec encoder;
+    private final FrameCodec decoder;
+    private final byte[] encodedInputBuffer;
+    private final byte[] encodedOutputBuffer;
+    private final Mixer mixer;
+    private final FrameRing captureRing;
+    private final FrameRing playbackRing;
+    private final PlaybackBuffer playback;
+    private final byte[] playbackFrame;
+    private final LatencyController latencyController;
+    private final VoiceActivityDetector voiceActivityDetector;
+    private final int[] comfortNoise;
+    private final byte[] droppedFrame;
+    private final DatagramChannel mediaChannel;
+    private final ByteBuffer outgoingPacket;
+    private final ByteBuffer incomingPacket;
+    private final ByteBuffer outgoingFrame;
+    private final ByteBuffer incomingHeader;
+    private final ByteBuffer probe = ByteBuffer.allocate(WireFrame.HEADER_SIZE);
+    private final ByteBuffer controlHeader = ByteBuffer.allocate(WireFrame.HEADER_SIZE);
+    private final ByteBuffer pong = ByteBuffer.allocate(WireFrame.PONG_SIZE);
+    private final ClockSync clock = new ClockSync();
+    private final long[] readyTimes;    // When a frame of the capture ring was recorded, by its position in the ring
+    private final long[] captureTimes;  // When its first sample was recorded
+    private long capturedFrames;
+    private long sentFrames;
+    private long nextProbe;
+    private int probeSequence;
+    private int pongs;
+    private volatile float captureNanos;
+    private volatile float sendQueueNanos;
+    private volatile float jitterBufferNanos;
+    private volatile float playbackDeviceNanos;
+    private volatile int serverJitterFrames;
+    private volatile Consumer<LatencyReport> latencyListener;
+    private int outgoingSequence;
+    private int incomingSequence = -1;
+    private boolean talking = true;
+    private long lastMarker;
+    private volatile long lateDatagrams;
+    private volatile long recycledFrames;
+    private volatile long droppedCapturedFrames;
+    private volatile long droppedReceivedFrames;
+    private volatile long suppressedFrames;
+    private final Metrics metrics;
+    private final LongAdder framesOut;
+    private final LongAdder bytesOut;
+    private final LongAdder framesIn;
+    private final LongAdder bytesIn;
+    private final LongAdder shortReads;
+    private final LongAdder[] recyclerActivations;
+    private final Histogram endToEndMicros;
+    private volatile Exception failure;
+    private volatile SignalRecycler signalRecycler;
+    private volatile float recycleThreshold;
+    private volatile boolean adaptiveRecycling;
+    private volatile boolean voiceActivityDetection = true;
+    private volatile boolean comfortNoiseEnabled = true;
+
+    public WuzlClient(String host, int port) throws Exception {
+        this(host, port, Handshake.DEFAULT_ROOM);
+    }
+
+    /**
+     * Announces a format the default devices support, so the server converts if it uses another one.
+     */
+    public WuzlClient(String host, int port, String room) throws Exception {
+        this(host, port, room, WuzlConfig.deviceFormat().orElse(null), WuzlClient::defaultInputDevice, WuzlClient::defaultOutputDevice);
+    }
+
+    public WuzlClient(String host, int port, FunctionWithException<WuzlConfig, AudioSource> inputDeviceFactory, FunctionWithException<WuzlConfig, AudioSink> outputDeviceFactory) throws Exception {
+        this(host, port, Handshake.DEFAULT_ROOM, inputDeviceFactory, outputDeviceFactory);
+    }
 
-    public WuzlClient(String host, int port) throws IOException, ClassNotFoundException, LineUnavailableException {
+    public WuzlClient(String host, int port, String room, FunctionWithException<WuzlConfig, AudioSource> inputDeviceFactory, FunctionWithException<WuzlConfig, AudioSink> outputDeviceFactory) throws Exception {
+        this(host, port, room, null, inputDeviceFactory, outputDeviceFactory);
+    }
+
+    /**
+     * @param room                the room to join, only clients in the same room hear each other
+     * @param format              the native format of the devices, or {@code null} to use the server's.
+     *                            A mixing server converts to and from it, a forwarding server ignores it
+     * @param inputDeviceFactory  creates the source of the audio to send, once the config was received from the server
+     * @param outputDeviceFactory creates the sink of the audio received, once the config was received from the server
+     */
+    public WuzlClient(String host, int port, String room, SerializableAudioFormat format, FunctionWithException<WuzlConfig, AudioSource> inputDeviceFactory, FunctionWithException<WuzlConfig, AudioSink> outputDeviceFactory) throws Exception {
         this.clientSocket = new Socket(host, port);
-        this.socketInputStream = clientSocket.getInputStream();
+        this.socketInputStream = new DataInputStream(clientSocket.getInputStream());
         this.socketOutputStream = clientSocket.getOutputStream();
         System.out.println("Connected to server as: " + clientSocket);
 
-        this.config = (WuzlConfig) receiveObject();
-        this.inputDevice = config.defaultInputDevice().orElseThrow(() -> new LineUnavailableException("No input device available for the following AudioFormat: " + config.audioFormat()));
-        this.outputDevice = config.defaultOutputDevice().orElseThrow(() -> new LineUnavailableException("No output device available for the following AudioFormat: " + config.audioFormat()));
+        Handshake.Welcome welcome = shakeHands(room, format);
+        this.config = welcome.config();
+        this.id = welcome.clientId();
+        this.mediaToken = welcome.mediaToken();
+        this.encoder = config.newCodec();
+        this.decoder = config.newCodec();
+        this.encodedInputBuffer = new byte[config.encodedBufferSize()];
+        this.encodedOutputBuffer = new byte[config.encodedBufferSize()];
+        this.mixer = new Mixer(config.audioFormat(), config.bufferSize());
+        this.captureRing = new FrameRing(RING_CAPACITY, config.bufferSize());
+        this.readyTimes = new long[captureRing.capacity()];
+        this.captureTimes = new long[captureRing.capacity()];
+        this.playbackRing = new FrameRing(RING_CAPACITY, config.bufferSize());
+        this.playback = new PlaybackBuffer(playbackRing, config.audioFormat(), config.bufferSize());
+        this.playbackFrame = new byte[config.bufferSize()];
+        this.latencyController = new LatencyController(config.frameDurationNanos(), config.bufferSize(), RING_CAPACITY);
+        this.voiceActivityDetector = new VoiceActivityDetector(config);
+        this.comfortNoise = new int[PcmSamples.sampleCount(config.audioFormat(), config.bufferSize())];
+        this.droppedFrame = new byte[config.bufferSize()];
+        this.mediaChannel = config.datagramMedia() ? DatagramChannel.open().connect(new InetSocketAddress(host, config.mediaPort())) : null;
+        this.outgoingPacket = ByteBuffer.allocate(MediaPacket.HEADER_SIZE + config.encodedBufferSize());
+        this.incomingPacket = ByteBuffer.allocate(MediaPacket.HEADER_SIZE + config.encodedBufferSize());
+        this.outgoingFrame = ByteBuffer.allocate(WireFrame.HEADER_SIZE + config.encodedBufferSize());
+        this.incomingHeader = ByteBuffer.allocate(WireFrame.HEADER_SIZE);
+        this.inputDevice = inputDeviceFactory.apply(config);
+        this.outputDevice = outputDeviceFactory.apply(config);
+
+        this.signalRecycler = SignalRecycler.SPEED_UP;
+        this.recycleThreshold = latencyController.threshold();
+        this.adaptiveRecycling = true;
+
+        this.metrics = new Metrics();
+        this.framesOut = metrics.counter("frames_out");
+        this.bytesOut = metrics.counter("bytes_out");
+        this.framesIn = metrics.counter("frames_in");
+        this.bytesIn = metrics.counter("bytes_in");
+        this.shortReads = metrics.counter("short_reads");
+        this.recyclerActivations = new LongAdder[SignalRecycler.values().length];
+
+        for (SignalRecycler recycler : SignalRecycler.values()) {
+            recyclerActivations[recycler.ordinal()] = metrics.counter("recycler." + recycler);
+        }
 
-        this.signalRecycler = SignalRecycler.DISCARD;
-        this.recycleThreshold = config.bufferSize() * 2.0f;
+        this.endToEndMicros = metrics.histogram("latency.end_to_end_micros");
+        metrics.gauge("latency.target_micros", () -> getTargetLatencyNanos() / 1000);
+        metrics.gauge("latency.jitter_micros", () -> latencyController.jitterNanos() / 1000);
+        metrics.gauge("latency.rtt_micros", () -> clock.rttNanos() / 1000);
+        metrics.gauge("latency.clock_offset_micros", () -> clock.offsetNanos() / 1000);
+        metrics.gauge("latency.mouth_to_ear_micros", () -> getLatency().totalNanos() / 1000);
+        metrics.gauge("capture_ring_depth", captureRing::size);
+        metrics.gauge("playback_ring_depth", playbackRing::size);
+        metrics.gauge("suppressed_frames", () -> suppressedFrames);
+        metrics.gauge("late_datagrams", () -> lateDatagrams);
+        metrics.gauge("dropped_captured_frames", () -> droppedCapturedFrames);
+        metrics.gauge("dropped_received_frames", () -> droppedReceivedFrames);
     }
 
 
     public static void main(String[] args) {
         try (var client = new WuzlClient(HOST, PORT)) {
+            client.setLatencyListener(report -> System.out.println("Latency: " + report));
             client.start();
         } catch (Exception e) {
             e.printStackTrace();
@@ -51,132 +209,403 @@ public class WuzlClient implements AutoCloseable {
     }
 
 
-    private Object receiveObject() throws IOException, ClassNotFoundException {
-        return new ObjectInputStream(socketInputStream).readObject();
+    private static AudioSource defaultInputDevice(WuzlConfig config) throws LineUnavailableException {
+        return AudioSource.of(config.defaultInputDevice().orElseThrow(() -> new LineUnavailableException("No input device available for the following AudioFormat: " + config.audioFormat())));
     }
 
-    public void start() throws LineUnavailableException {
-        byte[] inputBuffer = new byte[config.bufferSize()];
-        byte[] outputBuffer = new byte[config.bufferSize()];
-        prepareDevice(inputDevice);
-        prepareDevice(outputDevice);
+    private static AudioSink defaultOutputDevice(WuzlConfig config) throws LineUnavailableException {
+        return AudioSink.of(config.defaultOutputDevice().orElseThrow(() -> new LineUnavailableException("No output device available for the following AudioFormat: " + config.audioFormat())));
+    }
 
-//        Thread senderThread = new Thread(() -> {
-//            while (true) {
-//                readAudioFromInputDeviceAndSendToServer(inputBuffer);
-//            }
-//        });
-//
-//        Thread receiverThread = new Thread(() -> {
-//            while (true) {
-//                receiveAudioFromServerAndWriteToOutputDevice(outputBuffer);
-//            }
-//        });
+    /**
+     * Offers every codec and both transports, the server picks.
+     */
+    private Handshake.Welcome shakeHands(String room, SerializableAudioFormat format) throws IOException {
+        var out = new DataOutputStream(new BufferedOutputStream(socketOutputStream));
+        Handshake.writeHello(out, EnumSet.allOf(AudioCodec.class), Handshake.TCP | Handshake.UDP, room, format);
+        out.flush();
+        return Handshake.readWelcome(socketInputStream, clientSocket.getPort());
+    }
 
-        while (true) {
-            readAudioFromInputDeviceAndSendToServer(inputBuffer);
-            receiveAudioFromServerAndWriteToOutputDevice(outputBuffer);
+    /**
+     * Runs until the client is closed.
+     * Capturing, sending, receiving and playing back run on their own threads, connected by {@link FrameRing}s,
+     * so a slow network can not stall the capture and a slow device can not stall the network.
+     * If the audio travels over UDP, another thread reads the answers to the {@link WireFrame#PING}s from the control connection.
+     *
+     * @throws Exception the reason why one of the stages failed, if the client was not closed on purpose
+     */
+    public void start() throws Exception {
+        inputDevice.open();
+        outputDevice.open();
+
+        List<Thread> stages = new ArrayList<>(List.of(
+                stage("capture", this::captureFrame),
+                stage("sender", this::sendFrame),
+                stage("receiver", this::receiveFrame),
+                stage("playback", this::playFrame)
+        ));
+
+        if (mediaChannel != null) {
+            stages.add(stage("control", this::receiveControlFrame));
+        }
+
+        for (Thread stage : stages) {
+            stage.start();
         }
 
-//        senderThread.start();
-//        receiverThread.start();
+        for (Thread stage : stages) {
+            stage.join();
+        }
+
+        if (failure != null)
+            throw failure;
     }
 
-    private void prepareDevice(DataLine device) throws LineUnavailableException {
-        device.open();
-        device.start();
+    private Thread stage(String name, RunnableWithException step) {
+        return new Thread(() -> {
+            try {
+                while (!clientSocket.isClosed()) {
+                    step.run();
+                }
+            } catch (Exception e) {
+                if (!clientSocket.isClosed()) {
+                    failure = e;
+                    closeSocket();  // Stops the other stages
+                }
+            }
+        }, name + "-" + clientSocket.getLocalPort());
     }
 
-    private void readAudioFromInputDeviceAndSendToServer(byte[] buffer) {
-        readAudioFromInputDevice(buffer);
+    private void captureFrame() {
+        byte[] frame = captureRing.claim();
 
-        try {
-            sendAudioToServer(buffer);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (frame == null) {
+            readAudioFromInputDevice(droppedFrame);  // Keep the device flowing, the sender is too far behind anyway
+            droppedCapturedFrames++;
+            return;
         }
+
+        readAudioFromInputDevice(frame);
+
+        long ready = System.nanoTime();
+        long capture = config.frameDurationNanos() + bytesToNanos(inputDevice.availableBytes());  // From the first sample on
+        int slot = (int) (capturedFrames++ & (readyTimes.length - 1));
+        readyTimes[slot] = ready;
+        captureTimes[slot] = ready - capture;
+        captureNanos += (capture - captureNanos) * STAGE_GAIN;
+        captureRing.publish(frame.length);
     }
 
-    private void receiveAudioFromServerAndWriteToOutputDevice(byte[] buffer) {
-        try {
-            //receiveAudioFromServer(buffer);
-            combineAudioFromEveryoneElse(buffer);
-            writeAudioToOutputDevice(buffer);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    private void sendFrame() throws IOException {
+        probeServer();
+        byte[] frame = captureRing.peek();
+
+        if (frame == null) {
+            FrameRing.idle();
+            return;
         }
-    }
 
-    private void readAudioFromInputDevice(byte[] buffer) {
-        inputDevice.read(buffer, 0, buffer.length);
+        int slot = (int) (sentFrames++ & (readyTimes.length - 1));
+        sendQueueNanos += (System.nanoTime() - readyTimes[slot] - sendQueueNanos) * STAGE_GAIN;
+        sendAudioToServer(frame, captureTimes[slot]);
+        captureRing.release();
     }
 
-    private void sendAudioToServer(byte[] buffer) throws IOException {
-        socketOutputStream.write(buffer);
+    /**
+     * Sends a {@link WireFrame#PING} over the control connection every {@link #PROBE_INTERVAL_NANOS},
+     * from the sender, so it never interleaves with a frame.
+     */
+    private void probeServer() throws IOException {
+        long now = System.nanoTime();
+
+        if (now - nextProbe < 0) {
+            return;
+        }
+
+        nextProbe = now + PROBE_INTERVAL_NANOS;
+        probe.clear();
+        WireFrame.writeHeader(probe, WireFrame.PING, (byte) 0, id, probeSequence++, System.nanoTime(), 0);
+        socketOutputStream.write(probe.array(), 0, probe.position());
+        framesOut.increment();
+        bytesOut.add(probe.position());
     }
 
-    private void combineAudioFromEveryoneElse(byte[] buffer) throws Exception {
-        int[] sumOfAllSignals = new int[buffer.length];
+    private void receiveFrame() throws Exception {
+        byte[] frame = playbackRing.claim();
+        boolean dropped = frame == null;
 
-        while (true) {
-            if (socketInputStream.read() == 0)  // 0 = stop adding here, 1 = add following audio chunk to sum
-                break;
+        if (dropped) {
+            frame = droppedFrame;  // Keep reading from the network, the device is too far behind anyway
+        }
+
+        if (mediaChannel != null) {
+            receiveDatagramFromServer(frame);
+        } else {
+            combineAudioFromEveryoneElse(frame);
+        }
+
+        long now = System.nanoTime();
+        latencyController.frameArrived(now);
+        recordEndToEndLatency(now);
 
-            receiveAudioFromServer(buffer);
-            addSignalToSum(buffer, sumOfAllSignals);
+        if (dropped) {
+            droppedReceivedFrames++;
+        } else {
+            playbackRing.publish(frame.length);
         }
+    }
 
-        clampSumToByte(sumOfAllSignals, buffer);
+    /**
+     * From the server sending the frame until it is played, estimated by the frames queued in front of it.
+     * The server's timestamp is moved to the client's clock by the {@link ClockSync}, so it is only exact on the same host.
+     */
+    private void recordEndToEndLatency(long now) {
+        long sent = mediaChannel != null ? MediaPacket.timestamp(incomingPacket) : WireFrame.timestamp(incomingHeader);
+        endToEndMicros.record((now - clock.toLocal(sent) + playbackRing.size() * config.frameDurationNanos()) / 1000);
     }
 
-    private int receiveAudioFromServer(byte[] buffer) throws Exception {
-        int available = socketInputStream.available();
+    /**
+     * If more audio is queued than {@link #recycleThreshold} allows, the {@link SignalRecycler} decides how to catch up.
+     * With {@link #adaptiveRecycling}, both are picked by the {@link LatencyController}.
+     */
+    private void playFrame() throws Exception {
+        int queuedBytes = playback.queuedBytes();
+        int length;
 
-        if (available > recycleThreshold) {
-            return signalRecycler.recycle(socketInputStream, buffer);
+        latencyController.queued(queuedBytes);
+        jitterBufferNanos += (bytesToNanos(queuedBytes) - jitterBufferNanos) * STAGE_GAIN;
+
+        if (adaptiveRecycling) {
+            recycleThreshold = latencyController.threshold();
+            signalRecycler = latencyController.strategy(queuedBytes);
+        }
+
+        if (queuedBytes > recycleThreshold) {
+            recycledFrames++;
+            recyclerActivations[signalRecycler.ordinal()].increment();
+            length = signalRecycler.recycle(playback, playbackFrame);
         } else {
-            int readBytes = socketInputStream.read(buffer);
-            if (readBytes == -1)
-                throw new EOFException("Server closed connection");
+            length = playback.read(playbackFrame);
+        }
 
-            return readBytes;
+        if (length == 0) {
+            FrameRing.idle();
+            return;
         }
+
+        writeAudioToOutputDevice(playbackFrame, length);
+        playbackDeviceNanos += (bytesToNanos(outputDevice.queuedBytes()) - playbackDeviceNanos) * STAGE_GAIN;
     }
 
-    private void writeAudioToOutputDevice(byte[] buffer) {
-        outputDevice.write(buffer, 0, buffer.length);
+    private void readAudioFromInputDevice(byte[] buffer) {
+        inputDevice.read(buffer);
     }
 
     /**
-     * The two arrays are assumed to be of the same length. This is not checked for performance reasons.
+     * Frames without voice are not sent, only the first one of a pause is replaced by a silence marker.
+     * Over UDP the marker is repeated every {@link #KEEPALIVE_NANOS}, the server only learns where to send the mix from datagrams,
+     * so a client that joins silent or whose marker was lost still hears the others, and its NAT mapping does not expire.
      *
-     * @param buffer          the buffer to be added to the sum component-wisely
-     * @param sumOfAllSignals the array to which the buffer is added
+     * @param captured when the first sample of the frame was recorded, the timestamp of the frame
      */
-    private void addSignalToSum(byte[] buffer, int[] sumOfAllSignals) {
-        for (int i = 0; i < buffer.length; i++) {
-            sumOfAllSignals[i] += buffer[i];
+    private void sendAudioToServer(byte[] buffer, long captured) throws IOException {
+        if (voiceActivityDetection && !voiceActivityDetector.isVoice(buffer, buffer.length)) {
+            suppressedFrames++;
+
+            if (talking || mediaChannel != null && captured - lastMarker >= KEEPALIVE_NANOS) {
+                talking = false;
+                lastMarker = captured;
+                sendToServer(WireFrame.SILENCE, 0, captured);
+            }
+
+            return;
         }
+
+        talking = true;
+        int length = encoder.encode(buffer, buffer.length, encodedInputBuffer);
+        sendToServer(WireFrame.AUDIO, length, captured);
     }
 
     /**
-     * The two arrays are assumed to be of the same length. This is not checked for performance reasons.
+     * @param length the number of bytes in {@link #encodedInputBuffer} to send
+     */
+    private void sendToServer(byte type, int length, long captured) throws IOException {
+        if (mediaChannel != null) {
+            MediaPacket.writeHeader(outgoingPacket, id, outgoingSequence++, captured, mediaToken);
+            outgoingPacket.put(encodedInputBuffer, 0, length).flip();
+            bytesOut.add(mediaChannel.write(outgoingPacket));
+        } else {
+            outgoingFrame.clear();
+            WireFrame.writeHeader(outgoingFrame, type, (byte) 0, id, outgoingSequence++, captured, length);
+            outgoingFrame.put(encodedInputBuffer, 0, length);
+            socketOutputStream.write(outgoingFrame.array(), 0, outgoingFrame.position());  // Header and payload in one write
+            bytesOut.add(outgoingFrame.position());
+        }
+
+        framesOut.increment();
+    }
+
+    /**
+     * Datagrams that are older than the last one received are dropped instead of being played late.
+     */
+    private void receiveDatagramFromServer(byte[] buffer) throws IOException {
+        while (true) {
+            incomingPacket.clear();
+            mediaChannel.read(incomingPacket);
+            incomingPacket.flip();
+            framesIn.increment();
+            bytesIn.add(incomingPacket.limit());
+
+            int length = MediaPacket.payloadLength(incomingPacket);
+
+            if (length != encodedOutputBuffer.length && length != 0)
+                continue;
+
+            int sequence = MediaPacket.sequence(incomingPacket);
+
+            if (incomingSequence != -1 && sequence - incomingSequence <= 0) {  // Overflow-safe comparison
+                lateDatagrams++;
+                continue;
+            }
+
+            incomingSequence = sequence;
+
+            if (length == 0) {
+                playSilence(buffer);
+                return;
+            }
+
+            incomingPacket.position(MediaPacket.HEADER_SIZE);
+            incomingPacket.get(encodedOutputBuffer);
+            decoder.decode(encodedOutputBuffer, encodedOutputBuffer.length, buffer);
+            return;
+        }
+    }
+
+    /**
+     * Mixes all frames of one tick, the last one is marked with {@link WireFrame#END_OF_TICK}.
+     * A {@link WireFrame#PONG} may arrive between two frames.
+     */
+    private void combineAudioFromEveryoneElse(byte[] buffer) throws IOException {
+        boolean heard = false;
+        mixer.clear();
+
+        do {
+            socketInputStream.readFully(incomingHeader.array());
+
+            if (WireFrame.type(incomingHeader) == WireFrame.PONG) {
+                receivePong(incomingHeader, System.nanoTime());
+                continue;
+            }
+
+            int length = receiveAudioFromServer(encodedOutputBuffer);
+
+            if (WireFrame.type(incomingHeader) == WireFrame.AUDIO) {
+                int pcmLength = decoder.decode(encodedOutputBuffer, length, buffer);
+                mixer.add(buffer, pcmLength);
+                heard = true;
+            }
+        } while (!WireFrame.isEndOfTick(incomingHeader));
+
+        if (heard) {
+            mixer.mix(buffer);
+        } else {
+            playSilence(buffer);
+        }
+    }
+
+    /**
+     * Only the answers to the {@link WireFrame#PING}s arrive over the control connection while the audio travels over UDP.
+     */
+    private void receiveControlFrame() throws IOException {
+        socketInputStream.readFully(controlHeader.array());
+
+        if (WireFrame.type(controlHeader) == WireFrame.PONG) {
+            receivePong(controlHeader, System.nanoTime());
+        } else {
+            socketInputStream.skipNBytes(WireFrame.payloadLength(controlHeader));
+        }
+    }
+
+    /**
+     * Reads the payload of the {@link WireFrame#PONG} whose header was just read, and updates the {@link ClockSync}.
      *
-     * @param intBuffer  the buffer to clamp to byte
-     * @param byteBuffer the buffer to write the clamped values to
+     * @param received when the header arrived, {@code t3}
+     */
+    private void receivePong(ByteBuffer header, long received) throws IOException {
+        int length = WireFrame.payloadLength(header);
+
+        if (length != WireFrame.PONG_SIZE)
+            throw new StreamCorruptedException("Invalid pong length: " + length);
+
+        socketInputStream.readFully(pong.array());
+        framesIn.increment();
+        bytesIn.add(WireFrame.HEADER_SIZE + length);
+
+        clock.probe(pong.getLong(0), pong.getLong(8), WireFrame.timestamp(header), received);
+        serverJitterFrames = pong.getInt(16);
+        Consumer<LatencyReport> listener = latencyListener;
+
+        if (listener != null && ++pongs % REPORT_EVERY == 0) {
+            listener.accept(getLatency());
+        }
+    }
+
+    /**
+     * Fills the buffer with very quiet noise, or with silence if comfort noise is disabled.
+     * Total silence makes listeners think the connection dropped.
      */
-    private void clampSumToByte(int[] intBuffer, byte[] byteBuffer) {
-        for (int i = 0; i < intBuffer.length; i++) {
-            byteBuffer[i] = clampToByte(intBuffer[i]);
+    private void playSilence(byte[] buffer) {
+        double amplitude = comfortNoiseEnabled ? COMFORT_NOISE_LEVEL * PcmSamples.maxValue(config.audioFormat()) : 0.0;
+
+        for (int i = 0; i < comfortNoise.length; i++) {
+            comfortNoise[i] = (int) (SignalGenerator.NOISE.sample(0.0) * amplitude);
         }
+
+        PcmSamples.encode(comfortNoise, comfortNoise.length, buffer, config.audioFormat());
     }
 
-    private byte clampToByte(int value) {
-        return (byte) clamp(value, Byte.MIN_VALUE, Byte.MAX_VALUE);
+    /**
+     * Reads the payload of the frame whose header was just read.
+     */
+    private int receiveAudioFromServer(byte[] buffer) throws IOException {
+        int length = WireFrame.payloadLength(incomingHeader);
+
+        if (length < 0 || length > buffer.length)
+            throw new StreamCorruptedException("Invalid payload length: " + length);
+
+        if (socketInputStream.available() < length) {
+            shortReads.increment();  // The payload did not arrive with its header, so the read below waits for it
+        }
+
+        socketInputStream.readFully(buffer, 0, length);
+        framesIn.increment();
+        bytesIn.add(WireFrame.HEADER_SIZE + length);
+        return length;
+    }
+
+    private void writeAudioToOutputDevice(byte[] buffer, int length) {
+        outputDevice.write(buffer, length);
+    }
+
+    private long bytesToNanos(int bytes) {
+        return (long) bytes * config.frameDurationNanos() / config.bufferSize();
     }
 
-    private int clamp(int value, int min, int max) {
-        return Math.min(Math.max(value, min), max);
+    /**
+     * Also closes the media channel, which wakes up a receiver waiting for a datagram.
+     */
+    private void closeSocket() {
+        try {
+            clientSocket.close();
+
+            if (mediaChannel != null) {
+                mediaChannel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
 
@@ -184,11 +613,15 @@ public class WuzlClient implements AutoCloseable {
         return clientSocket;
     }
 
-    public TargetDataLine getInputDevice() {
+    public WuzlConfig getConfig() {
+        return config;
+    }
+
+    public AudioSource getInputDevice() {
         return inputDevice;
     }
 
-    public SourceDataLine getOutputDevice() {
+    public AudioSink getOutputDevice() {
         return outputDevice;
     }
 
@@ -196,21 +629,151 @@ public class WuzlClient implements AutoCloseable {
         return signalRecycler;
     }
 
+    /**
+     * Also turns off {@link #setAdaptiveRecycling(boolean) adaptive recycling}.
+     */
     public void setSignalRecycler(SignalRecycler combiner) {
+        this.adaptiveRecycling = false;
         this.signalRecycler = combiner;
     }
 
+    /**
+     * @return the number of datagrams dropped because they arrived after a newer one
+     */
+    public long getLateDatagrams() {
+        return lateDatagrams;
+    }
+
+    /**
+     * @return how often the {@link SignalRecycler} kicked in because more audio was queued for playback than the recycle threshold
+     */
+    public long getRecycledFrames() {
+        return recycledFrames;
+    }
+
+    /**
+     * @return the number of captured frames dropped because the sender could not keep up
+     */
+    public long getDroppedCapturedFrames() {
+        return droppedCapturedFrames;
+    }
+
+    /**
+     * @return the number of received frames dropped because the output device could not keep up
+     */
+    public long getDroppedReceivedFrames() {
+        return droppedReceivedFrames;
+    }
+
+    /**
+     * @return the number of captured frames not sent, because nobody was talking
+     */
+    public long getSuppressedFrames() {
+        return suppressedFrames;
+    }
+
+    public boolean isVoiceActivityDetection() {
+        return voiceActivityDetection;
+    }
+
+    /**
+     * @param voiceActivityDetection whether captured frames without voice are replaced by a silence marker (the default)
+     */
+    public void setVoiceActivityDetection(boolean voiceActivityDetection) {
+        this.voiceActivityDetection = voiceActivityDetection;
+    }
+
+    public boolean isComfortNoiseEnabled() {
+        return comfortNoiseEnabled;
+    }
+
+    /**
+     * @param comfortNoiseEnabled whether quiet noise is played while nobody is talking (the default), or total silence
+     */
+    public void setComfortNoiseEnabled(boolean comfortNoiseEnabled) {
+        this.comfortNoiseEnabled = comfortNoiseEnabled;
+    }
+
+    /**
+     * @return the amount of queued playback audio in bytes above which the {@link SignalRecycler} kicks in
+     */
     public float getRecycleThreshold() {
         return recycleThreshold;
     }
 
+    /**
+     * Also turns off {@link #setAdaptiveRecycling(boolean) adaptive recycling}.
+     */
     public void setRecycleThreshold(int recycleThreshold) {
+        this.adaptiveRecycling = false;
         this.recycleThreshold = recycleThreshold;
     }
 
+    public boolean isAdaptiveRecycling() {
+        return adaptiveRecycling;
+    }
+
+    /**
+     * @param adaptiveRecycling whether the recycle threshold and the {@link SignalRecycler} follow the measured jitter (the default)
+     */
+    public void setAdaptiveRecycling(boolean adaptiveRecycling) {
+        this.adaptiveRecycling = adaptiveRecycling;
+    }
+
+    /**
+     * @return the amount of queued playback audio in nanoseconds the playback currently aims for
+     */
+    public long getTargetLatencyNanos() {
+        return adaptiveRecycling ? latencyController.targetLatencyNanos() : (long) (recycleThreshold / config.bufferSize() * config.frameDurationNanos());
+    }
+
+    public LatencyController getLatencyController() {
+        return latencyController;
+    }
+
+    /**
+     * @return the latency of every frame in microseconds, from the server sending it until it is played, on the client's clock
+     */
+    public Histogram getEndToEndLatency() {
+        return endToEndMicros;
+    }
+
+    /**
+     * @return where the latency currently goes, stage by stage, smoothed over the last few frames
+     */
+    public LatencyReport getLatency() {
+        long rtt = clock.rttNanos();
+        return new LatencyReport((long) captureNanos, (long) sendQueueNanos, rtt / 2, serverJitterFrames * config.frameDurationNanos(),
+                (long) jitterBufferNanos, (long) playbackDeviceNanos, rtt, clock.offsetNanos());
+    }
+
+    public ClockSync getClockSync() {
+        return clock;
+    }
+
+    /**
+     * @param latencyListener called with the {@link #getLatency() latency} every {@value #REPORT_EVERY} probes, about every 10 seconds,
+     *                        on the thread that reads from the control connection, or {@code null}
+     */
+    public void setLatencyListener(Consumer<LatencyReport> latencyListener) {
+        this.latencyListener = latencyListener;
+    }
+
+    /**
+     * @return the metrics of this client, export them with {@link Metrics#registerMBean(String)} or {@link Metrics#serveHttp(int)}
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
     @Override
     public void close() throws Exception {
         clientSocket.close();
+
+        if (mediaChannel != null) {
+            mediaChannel.close();
+        }
+
         inputDevice.close();
         outputDevice.close();
     }
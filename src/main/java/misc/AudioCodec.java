@@ -0,0 +1,153 @@
+package misc;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * The codecs audio can travel with, all of them pure Java.
+ * Every codec except {@link #PCM} requires 16-bit signed samples.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public enum AudioCodec {
+    PCM(format -> true, (format, pcmSize) -> pcmSize, PcmCodec::new),
+
+    ULAW(AudioCodec::isSigned16Bit, (format, pcmSize) -> pcmSize / 2, (format, pcmSize) -> new G711Codec(format, pcmSize, true)),
+
+    ALAW(AudioCodec::isSigned16Bit, (format, pcmSize) -> pcmSize / 2, (format, pcmSize) -> new G711Codec(format, pcmSize, false)),
+
+    IMA_ADPCM(AudioCodec::isSigned16Bit, (format, pcmSize) -> ImaAdpcm.encodedSize(pcmSize / 2, format.getChannels()), AdpcmCodec::new);
+
+    private final Predicate<AudioFormat> supports;
+    private final BiFunction<AudioFormat, Integer, Integer> encodedSize;
+    private final BiFunction<AudioFormat, Integer, FrameCodec> factory;
+
+    AudioCodec(Predicate<AudioFormat> supports, BiFunction<AudioFormat, Integer, Integer> encodedSize, BiFunction<AudioFormat, Integer, FrameCodec> factory) {
+        this.supports = supports;
+        this.encodedSize = encodedSize;
+        this.factory = factory;
+    }
+
+
+    public boolean supports(AudioFormat format) {
+        return supports.test(format);
+    }
+
+    /**
+     * @param pcmSize the size of a frame in bytes before encoding
+     * @return the size of an encoded frame in bytes
+     */
+    public int encodedSize(AudioFormat format, int pcmSize) {
+        return encodedSize.apply(format, pcmSize);
+    }
+
+    /**
+     * @param pcmSize the size of a frame in bytes before encoding
+     * @return a new codec instance, every thread coding frames needs its own
+     */
+    public FrameCodec newCodec(AudioFormat format, int pcmSize) {
+        return factory.apply(format, pcmSize);
+    }
+
+    private static boolean isSigned16Bit(AudioFormat format) {
+        return format.getSampleSizeInBits() == 16 && format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED;
+    }
+
+    private static short readSample(byte[] pcm, int index, boolean bigEndian) {
+        int hi = bigEndian ? 0 : 1;
+        return (short) ((pcm[2 * index + hi] << 8) | (pcm[2 * index + 1 - hi] & 0xFF));
+    }
+
+    private static void writeSample(byte[] pcm, int index, int sample, boolean bigEndian) {
+        int hi = bigEndian ? 0 : 1;
+        pcm[2 * index + hi] = (byte) (sample >> 8);
+        pcm[2 * index + 1 - hi] = (byte) sample;
+    }
+
+
+    private record PcmCodec(AudioFormat format, int pcmSize) implements FrameCodec {
+
+        @Override
+        public int encode(byte[] pcm, int length, byte[] target) {
+            System.arraycopy(pcm, 0, target, 0, length);
+            return length;
+        }
+
+        @Override
+        public int decode(byte[] encoded, int length, byte[] pcm) {
+            System.arraycopy(encoded, 0, pcm, 0, length);
+            return length;
+        }
+
+    }
+
+    private record G711Codec(AudioFormat format, int pcmSize, boolean ulaw) implements FrameCodec {
+
+        @Override
+        public int encode(byte[] pcm, int length, byte[] target) {
+            boolean bigEndian = format.isBigEndian();
+            int samples = length / 2;
+
+            for (int i = 0; i < samples; i++) {
+                short sample = readSample(pcm, i, bigEndian);
+                target[i] = ulaw ? G711.encodeUlaw(sample) : G711.encodeAlaw(sample);
+            }
+
+            return samples;
+        }
+
+        @Override
+        public int decode(byte[] encoded, int length, byte[] pcm) {
+            boolean bigEndian = format.isBigEndian();
+
+            for (int i = 0; i < length; i++) {
+                writeSample(pcm, i, ulaw ? G711.decodeUlaw(encoded[i]) : G711.decodeAlaw(encoded[i]), bigEndian);
+            }
+
+            return length * 2;
+        }
+
+    }
+
+    private static final class AdpcmCodec implements FrameCodec {
+        private final AudioFormat format;
+        private final short[] samples;
+        private final int[] predictors;
+        private final int[] indices;
+
+        private AdpcmCodec(AudioFormat format, int pcmSize) {
+            this.format = format;
+            this.samples = new short[pcmSize / 2];
+            this.predictors = new int[format.getChannels()];
+            this.indices = new int[format.getChannels()];
+        }
+
+        @Override
+        public int encode(byte[] pcm, int length, byte[] target) {
+            boolean bigEndian = format.isBigEndian();
+            int count = Math.min(length / 2, samples.length);
+
+            for (int i = 0; i < count; i++) {
+                samples[i] = readSample(pcm, i, bigEndian);
+            }
+
+            return ImaAdpcm.encode(samples, count, format.getChannels(), target, predictors, indices);
+        }
+
+        @Override
+        public int decode(byte[] encoded, int length, byte[] pcm) {
+            boolean bigEndian = format.isBigEndian();
+            int count = ImaAdpcm.decode(encoded, length, format.getChannels(), samples, predictors, indices);
+
+            for (int i = 0; i < count; i++) {
+                writeSample(pcm, i, samples[i], bigEndian);
+            }
+
+            return count * 2;
+        }
+
+    }
+
+}
@@ -0,0 +1,209 @@
+package misc;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts a stream of PCM frames from one {@link AudioFormat} to another: bit depth, endianness and signedness,
+ * channel count (mono is duplicated, more channels are averaged down to mono) and sample rate.
+ * <p>
+ * Every call converts one frame of the source size into one frame of the target size, so both sides keep ticking at the same rate.
+ * The sample rate is converted by the ratio of the two frame sizes, with a polyphase windowed-sinc filter of {@link #TAPS} taps.
+ * Every output sample of a frame falls on the same fractional input position in every frame, so each one has its own phase,
+ * computed once and shared by all converters with the same frame sizes. Any ratio works, converting costs {@code TAPS} multiplications per sample.
+ * The last samples of every frame are kept for the next one, so frame borders are seamless,
+ * at the cost of a delay of {@code TAPS / 2} samples.
+ * <p>
+ * Not thread-safe, allocation-free.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class FormatConverter {
+    private static final int TAPS = 16;
+    private static final double KAISER_BETA = 8.0;
+    private static final Map<Long, float[]> FILTERS = new ConcurrentHashMap<>();  // By input and output frames per frame
+
+    private final AudioFormat from;
+    private final AudioFormat to;
+    private final int fromChannels;
+    private final int toChannels;
+    private final int inFrames;
+    private final int outFrames;
+    private final int toBytes;
+    private final float inScale;
+    private final float outScale;
+    private final int[] inSamples;
+    private final int[] outSamples;
+    private final float[][] input;  // Per target channel: TAPS samples of history, then the current frame
+    private final float[] filter;   // TAPS coefficients for every output sample of a frame
+    private final double step;
+    private final boolean resampling;
+
+    /**
+     * @param fromBytes the size of a source frame in bytes
+     * @param toBytes   the size of a target frame in bytes, both frames should last about as long
+     */
+    public FormatConverter(AudioFormat from, int fromBytes, AudioFormat to, int toBytes) {
+        this.from = from;
+        this.to = to;
+        this.fromChannels = from.getChannels();
+        this.toChannels = to.getChannels();
+        this.inFrames = PcmSamples.sampleCount(from, fromBytes) / fromChannels;
+        this.outFrames = PcmSamples.sampleCount(to, toBytes) / toChannels;
+        this.toBytes = outFrames * toChannels * PcmSamples.bytesPerSample(to);
+        this.inScale = 1.0f / (PcmSamples.maxValue(from) + 1);
+        this.outScale = PcmSamples.maxValue(to) + 1;
+        this.inSamples = new int[inFrames * fromChannels];
+        this.outSamples = new int[outFrames * toChannels];
+        this.input = new float[toChannels][TAPS + inFrames];
+        this.step = (double) inFrames / outFrames;
+        this.resampling = inFrames != outFrames;
+        this.filter = resampling ? FILTERS.computeIfAbsent((long) inFrames << 32 | outFrames, key -> filter(inFrames, outFrames)) : null;
+    }
+
+
+    /**
+     * @return the number of bytes written to {@code target}, always a full target frame
+     */
+    public int convert(byte[] source, int length, byte[] target) {
+        int count = PcmSamples.decode(source, Math.min(length, inSamples.length * PcmSamples.bytesPerSample(from)), inSamples, from);
+        Arrays.fill(inSamples, count, inSamples.length, 0);
+        remixChannels();
+
+        if (resampling) {
+            resample();
+        } else {
+            for (int c = 0; c < toChannels; c++) {
+                float[] x = input[c];
+
+                for (int k = 0; k < outFrames; k++) {
+                    outSamples[k * toChannels + c] = Math.round(x[TAPS + k] * outScale);
+                }
+            }
+        }
+
+        PcmSamples.encode(outSamples, outSamples.length, target, to);
+        return toBytes;
+    }
+
+    /**
+     * Forgets the history, e.g. after a pause, so the next frame starts from silence.
+     */
+    public void reset() {
+        for (float[] x : input) {
+            Arrays.fill(x, 0, TAPS, 0);
+        }
+    }
+
+    private void remixChannels() {
+        for (int c = 0; c < toChannels; c++) {
+            float[] x = input[c];
+
+            for (int i = 0; i < inFrames; i++) {
+                int frame = i * fromChannels;
+                float sample;
+
+                if (fromChannels == toChannels) {
+                    sample = inSamples[frame + c];
+                } else if (toChannels == 1) {
+                    int sum = 0;
+
+                    for (int k = 0; k < fromChannels; k++) {
+                        sum += inSamples[frame + k];
+                    }
+
+                    sample = (float) sum / fromChannels;
+                } else {
+                    sample = inSamples[frame + c % fromChannels];
+                }
+
+                x[TAPS + i] = sample * inScale;
+            }
+        }
+    }
+
+    /**
+     * Output sample {@code k} is centered on input position {@code TAPS / 2 + k * step}, which always has enough samples around it.
+     */
+    private void resample() {
+        for (int c = 0; c < toChannels; c++) {
+            float[] x = input[c];
+
+            for (int k = 0; k < outFrames; k++) {
+                int first = (int) (TAPS / 2 + k * step) - TAPS / 2 + 1;
+                int phase = k * TAPS;
+                float a = 0;
+                float b = 0;
+                float d = 0;
+                float e = 0;
+
+                for (int t = 0; t < TAPS; t += 4) {  // Four independent sums, so the additions do not wait for each other
+                    a += x[first + t] * filter[phase + t];
+                    b += x[first + t + 1] * filter[phase + t + 1];
+                    d += x[first + t + 2] * filter[phase + t + 2];
+                    e += x[first + t + 3] * filter[phase + t + 3];
+                }
+
+                outSamples[k * toChannels + c] = Math.round((a + b + d + e) * outScale);
+            }
+
+            System.arraycopy(x, inFrames, x, 0, TAPS);
+        }
+    }
+
+    /**
+     * The cutoff frequency is the lower of both Nyquist frequencies, so downsampling does not alias.
+     */
+    private static float[] filter(int inFrames, int outFrames) {
+        double step = (double) inFrames / outFrames;
+        double cutoff = Math.min(1.0, 1 / step);
+        float[] filter = new float[outFrames * TAPS];
+
+        for (int phase = 0; phase < outFrames; phase++) {
+            double center = TAPS / 2 + phase * step;
+            double fraction = center - (int) center;
+            double sum = 0;
+
+            for (int t = 0; t < TAPS; t++) {
+                double distance = t - TAPS / 2 + 1 - fraction;  // From the output position to this tap's input sample
+                double sinc = distance == 0 ? 1 : Math.sin(Math.PI * cutoff * distance) / (Math.PI * cutoff * distance);
+                double window = kaiser(distance / (TAPS / 2.0));
+                filter[phase * TAPS + t] = (float) (cutoff * sinc * window);
+                sum += filter[phase * TAPS + t];
+            }
+
+            for (int t = 0; t < TAPS; t++) {
+                filter[phase * TAPS + t] /= (float) sum;  // Unity gain at DC
+            }
+        }
+
+        return filter;
+    }
+
+    /**
+     * @param x the position within the window, in [-1, 1]
+     */
+    private static double kaiser(double x) {
+        if (Math.abs(x) > 1) {
+            return 0;
+        }
+
+        return besselI0(KAISER_BETA * Math.sqrt(1 - x * x)) / besselI0(KAISER_BETA);
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+
+        for (int k = 1; k < 25; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+        }
+
+        return sum;
+    }
+
+}
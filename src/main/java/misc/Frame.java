@@ -0,0 +1,113 @@
+package misc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference-counted buffer from a {@link FramePool}, holding one encoded frame or one tick ready to be sent.
+ * <p>
+ * Whoever acquires a frame holds one reference, every additional holder has to {@link #retain()} it,
+ * and every holder {@link #release()}s it when done. The last release returns the frame to its pool,
+ * so it must not be touched afterwards. The content must not be modified while more than one reference exists.
+ * <p>
+ * Frames that are only written to channels may be direct, so the kernel reads them without another copy.
+ * One direct frame can then be sent to many sockets at once, every sender writes its own {@link #view()}.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public final class Frame {
+    private final FramePool pool;
+    private final ByteBuffer buffer;
+    private final AtomicInteger references = new AtomicInteger();
+
+    /**
+     * @param pool where the frame returns to, or {@code null} for a constant frame that is never recycled
+     */
+    Frame(FramePool pool, int capacity, boolean direct) {
+        this.pool = pool;
+        this.buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+
+    void acquired() {
+        references.set(1);
+        buffer.clear();
+    }
+
+    /**
+     * Adds a reference, which has to be released separately.
+     *
+     * @return this frame
+     */
+    public Frame retain() {
+        if (pool != null && references.getAndIncrement() <= 0)
+            throw new IllegalStateException("Frame was already released");
+
+        return this;
+    }
+
+    /**
+     * Removes a reference, the frame goes back to its pool when the last one is removed.
+     */
+    public void release() {
+        if (pool == null) {
+            return;
+        }
+
+        int left = references.decrementAndGet();
+
+        if (left == 0) {
+            pool.recycle(this);
+        } else if (left < 0) {
+            throw new IllegalStateException("Frame was released too often");
+        }
+    }
+
+
+    /**
+     * @throws UnsupportedOperationException if the frame is direct
+     */
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    /**
+     * @return the number of valid bytes, from index 0
+     */
+    public int length() {
+        return buffer.limit();
+    }
+
+    /**
+     * @return this frame
+     */
+    public Frame setLength(int length) {
+        buffer.clear().limit(length);
+        return this;
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * The buffer is shared by all holders, so only the single holder of a frame may move its position,
+     * e.g. to write it into, or to write it to a channel.
+     *
+     * @return the buffer of this frame, its limit is the {@link #length()}
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Shares the content without copying it, so each of several holders can write the frame to a channel at its own pace.
+     *
+     * @return a new buffer over the {@link #length()} valid bytes, with a position of its own
+     */
+    public ByteBuffer view() {
+        return buffer.duplicate().position(0);
+    }
+
+}
@@ -0,0 +1,25 @@
+package misc;
+
+/**
+ * Encodes and decodes frames of one stream with a specific {@link AudioCodec}.
+ * Instances keep scratch buffers for a single frame size, so they are not allocating, but also not thread-safe.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public interface FrameCodec {
+
+    /**
+     * @param pcm    the frame in the negotiated {@link javax.sound.sampled.AudioFormat}
+     * @param target at least {@link AudioCodec#encodedSize} bytes long
+     * @return the number of bytes written to {@code target}
+     */
+    int encode(byte[] pcm, int length, byte[] target);
+
+    /**
+     * @param pcm the frame in the negotiated {@link javax.sound.sampled.AudioFormat}
+     * @return the number of bytes written to {@code pcm}
+     */
+    int decode(byte[] encoded, int length, byte[] pcm);
+
+}
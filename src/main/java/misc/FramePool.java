@@ -0,0 +1,80 @@
+package misc;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recycles {@link Frame}s, so frames flowing from the network through the mixer back to the network are not allocated anew every tick.
+ * <p>
+ * Frames are only allocated while the pool is empty, i.e. until the pool holds as many frames as are in flight at once.
+ * After that, acquiring and releasing frames does not allocate. Frames may be released on any thread.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class FramePool {
+    private final int frameSize;
+    private final boolean direct;
+    private final BlockingQueue<Frame> free;
+    private final LongAdder allocations = new LongAdder();
+
+    /**
+     * @param frameSize the minimum capacity of every frame in bytes
+     * @param capacity  the maximum number of free frames kept, frames released beyond that are left to the garbage collector
+     * @param direct    whether the frames are direct, which suits frames that are only written to channels
+     */
+    public FramePool(int frameSize, int capacity, boolean direct) {
+        this.frameSize = frameSize;
+        this.direct = direct;
+        this.free = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public FramePool(int frameSize, int capacity) {
+        this(frameSize, capacity, false);
+    }
+
+
+    /**
+     * @return a frame with one reference, its length is its capacity
+     */
+    public Frame acquire() {
+        return acquire(frameSize);
+    }
+
+    /**
+     * @param capacity the minimum capacity needed, frames that are too small are dropped
+     * @return a frame with one reference, its length is its capacity
+     */
+    public Frame acquire(int capacity) {
+        Frame frame = free.poll();
+
+        if (frame == null || frame.capacity() < capacity) {
+            frame = new Frame(this, Math.max(capacity, frameSize), direct);
+            allocations.increment();
+        }
+
+        frame.acquired();
+        return frame;
+    }
+
+    void recycle(Frame frame) {
+        free.offer(frame);
+    }
+
+
+    /**
+     * @return how many frames this pool allocated so far, this stops growing once the pool is warmed up
+     */
+    public long allocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * @return the number of free frames
+     */
+    public int available() {
+        return free.size();
+    }
+
+}
@@ -0,0 +1,102 @@
+package misc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free single-producer/single-consumer ring of preallocated frames, connecting two pipeline stages.
+ * <p>
+ * The producer {@link #claim()}s a free frame, fills it and {@link #publish(int)}es it,
+ * the consumer {@link #peek()}s the oldest published frame, uses it and {@link #release()}s it.
+ * Frames are never copied or allocated after construction. Exactly one thread may produce and one thread may consume.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class FrameRing {
+    private static final long IDLE_NANOS = 200_000;
+
+    private final byte[][] frames;
+    private final int[] lengths;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();  // Next frame to consume
+    private final AtomicLong tail = new AtomicLong();  // Next frame to produce
+
+    /**
+     * @param capacity  the number of frames, rounded up to the next power of two
+     * @param frameSize the size of every frame in bytes
+     */
+    public FrameRing(int capacity, int frameSize) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.frames = new byte[size][frameSize];
+        this.lengths = new int[size];
+        this.mask = size - 1;
+    }
+
+
+    /**
+     * Producer only.
+     *
+     * @return the frame to fill next, or {@code null} if the ring is full
+     */
+    public byte[] claim() {
+        long t = tail.get();
+        return t - head.get() > mask ? null : frames[(int) t & mask];
+    }
+
+    /**
+     * Producer only. Makes the frame returned by the last {@link #claim()} visible to the consumer.
+     *
+     * @param length the number of valid bytes in the frame
+     */
+    public void publish(int length) {
+        long t = tail.get();
+        lengths[(int) t & mask] = length;
+        tail.lazySet(t + 1);
+    }
+
+    /**
+     * Consumer only.
+     *
+     * @return the oldest published frame, or {@code null} if the ring is empty
+     */
+    public byte[] peek() {
+        long h = head.get();
+        return h == tail.get() ? null : frames[(int) h & mask];
+    }
+
+    /**
+     * Consumer only.
+     *
+     * @return the number of valid bytes in the frame returned by {@link #peek()}
+     */
+    public int peekLength() {
+        return lengths[(int) head.get() & mask];
+    }
+
+    /**
+     * Consumer only. Hands the frame returned by the last {@link #peek()} back to the producer.
+     */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+
+    /**
+     * @return the number of published frames, may be outdated as soon as it is returned
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return frames.length;
+    }
+
+    /**
+     * Backs off briefly, for stages waiting for a frame or for space.
+     */
+    public static void idle() {
+        LockSupport.parkNanos(IDLE_NANOS);
+    }
+
+}
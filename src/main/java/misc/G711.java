@@ -0,0 +1,114 @@
+package misc;
+
+/**
+ * ITU-T G.711 mu-law and A-law companding of 16-bit samples to 8 bits.
+ * All conversions are table lookups, the tables are built once when the class is loaded.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public final class G711 {
+    private static final int ULAW_BIAS = 0x84;
+    private static final int ULAW_CLIP = 32635;
+    private static final int[] ALAW_SEGMENT_ENDS = {0x1F, 0x3F, 0x7F, 0xFF, 0x1FF, 0x3FF, 0x7FF, 0xFFF};
+
+    private static final byte[] LINEAR_TO_ULAW = new byte[1 << 16];
+    private static final byte[] LINEAR_TO_ALAW = new byte[1 << 16];
+    private static final short[] ULAW_TO_LINEAR = new short[1 << 8];
+    private static final short[] ALAW_TO_LINEAR = new short[1 << 8];
+
+    static {
+        for (int i = 0; i < LINEAR_TO_ULAW.length; i++) {
+            LINEAR_TO_ULAW[i] = linearToUlaw((short) i);
+            LINEAR_TO_ALAW[i] = linearToAlaw((short) i);
+        }
+
+        for (int i = 0; i < ULAW_TO_LINEAR.length; i++) {
+            ULAW_TO_LINEAR[i] = ulawToLinear((byte) i);
+            ALAW_TO_LINEAR[i] = alawToLinear((byte) i);
+        }
+    }
+
+    private G711() {
+    }
+
+
+    public static byte encodeUlaw(int sample) {
+        return LINEAR_TO_ULAW[sample & 0xFFFF];
+    }
+
+    public static byte encodeAlaw(int sample) {
+        return LINEAR_TO_ALAW[sample & 0xFFFF];
+    }
+
+    public static short decodeUlaw(byte value) {
+        return ULAW_TO_LINEAR[value & 0xFF];
+    }
+
+    public static short decodeAlaw(byte value) {
+        return ALAW_TO_LINEAR[value & 0xFF];
+    }
+
+    private static byte linearToUlaw(short sample) {
+        int pcm = sample;
+        int sign = (pcm >> 8) & 0x80;
+
+        if (sign != 0) {
+            pcm = -pcm;
+        }
+
+        pcm = Math.min(pcm, ULAW_CLIP) + ULAW_BIAS;
+        int exponent = 31 - Integer.numberOfLeadingZeros(pcm >> 7);
+        int mantissa = (pcm >> (exponent + 3)) & 0x0F;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    private static short ulawToLinear(byte value) {
+        int u = ~value;
+        int exponent = (u >> 4) & 0x07;
+        int mantissa = u & 0x0F;
+        int sample = (((mantissa << 3) + ULAW_BIAS) << exponent) - ULAW_BIAS;
+        return (short) ((u & 0x80) != 0 ? -sample : sample);
+    }
+
+    private static byte linearToAlaw(short sample) {
+        int pcm = sample >> 3;
+        int mask;
+
+        if (pcm >= 0) {
+            mask = 0xD5;
+        } else {
+            mask = 0x55;
+            pcm = -pcm - 1;
+        }
+
+        int segment = 0;
+
+        while (segment < ALAW_SEGMENT_ENDS.length && pcm > ALAW_SEGMENT_ENDS[segment]) {
+            segment++;
+        }
+
+        if (segment >= ALAW_SEGMENT_ENDS.length) {
+            return (byte) (0x7F ^ mask);
+        }
+
+        int value = segment << 4;
+        value |= segment < 2 ? (pcm >> 1) & 0x0F : (pcm >> segment) & 0x0F;
+        return (byte) (value ^ mask);
+    }
+
+    private static short alawToLinear(byte value) {
+        int a = (value ^ 0x55) & 0xFF;
+        int t = (a & 0x0F) << 4;
+        int segment = (a & 0x70) >> 4;
+
+        switch (segment) {
+            case 0 -> t += 8;
+            case 1 -> t += 0x108;
+            default -> t = (t + 0x108) << (segment - 1);
+        }
+
+        return (short) ((a & 0x80) != 0 ? t : -t);
+    }
+
+}
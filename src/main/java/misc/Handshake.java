@@ -0,0 +1,277 @@
+package misc;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The messages exchanged when a client connects, before any {@link WireFrame} is sent.
+ * The client says hello, the server answers with a welcome, or a rejection if it can not serve the client.
+ * <pre>
+ * Hello (client to server)          Welcome (server to client)
+ * int   magic "WUZL"                int   magic "WUZL"
+ * short version                     short version
+ * byte  codec count                 byte  status (0 = ok, the rest is only sent if ok)
+ * byte  codec ordinal * count       int   client id
+ * byte  transports (TCP|UDP|PEER)   int   buffer size
+ * UTF   room name                   float sample rate
+ * byte  has format (0 or 1)         byte  sample size in bits
+ * float sample rate   (if format)   byte  channels
+ * byte  sample size   (if format)   byte  flags (signed, big endian, server mixing)
+ * byte  channels      (if format)   byte  codec ordinal
+ * byte  flags         (if format)   short media port (unsigned, 0 = audio over TCP)
+ *                                   long  media token
+ * </pre>
+ * Codecs are identified by their {@link AudioCodec} ordinal, so new codecs must be appended and the version increased.
+ * The client offers every codec it supports, a mixing server welcomes it with the best one of them, see {@link WuzlConfig#negotiateCodec}.
+ * A client may announce the native format of its devices, a mixing server then converts its audio and welcomes it with that format,
+ * unless the format is not {@link #isSupported supported}.
+ * A server that links a room to its home node in a cluster says hello like a client, with {@link #PEER} set.
+ * A client that gets its audio over UDP puts the random media token into every {@link MediaPacket}, so nobody else can send in its name.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public final class Handshake {
+    public static final int MAGIC = 0x57555A4C;  // "WUZL"
+    public static final int VERSION = 4;
+    public static final String DEFAULT_ROOM = "lobby";
+
+    public static final int TCP = 1;
+    public static final int UDP = 2;
+    public static final int PEER = 4;
+
+    public static final byte OK = 0;
+    public static final byte UNSUPPORTED_VERSION = 1;
+    public static final byte UNSUPPORTED_CODEC = 2;
+    public static final byte NOT_HOME = 3;
+    public static final byte UNSUPPORTED_FORMAT = 4;
+    public static final byte SERVER_FULL = 5;
+
+    public static final float MIN_SAMPLE_RATE = 8000;
+    public static final float MAX_SAMPLE_RATE = 192000;
+
+    private static final int SIGNED = 1;
+    private static final int BIG_ENDIAN = 2;
+    private static final int SERVER_MIXING = 4;
+
+    private Handshake() {
+    }
+
+
+    /**
+     * @param room the room to join, it is opened if nobody is in it yet
+     */
+    public static void writeHello(DataOutput out, Set<AudioCodec> codecs, int transports, String room) throws IOException {
+        writeHello(out, codecs, transports, room, null);
+    }
+
+    /**
+     * @param format the native format of the client's audio devices, or {@code null} to take whatever the server uses
+     */
+    public static void writeHello(DataOutput out, Set<AudioCodec> codecs, int transports, String room, SerializableAudioFormat format) throws IOException {
+        writePreamble(out);
+        out.writeByte(codecs.size());
+
+        for (AudioCodec codec : codecs) {
+            out.writeByte(codec.ordinal());
+        }
+
+        out.writeByte(transports);
+        out.writeUTF(room);
+        out.writeBoolean(format != null);
+
+        if (format != null) {
+            writeFormat(out, format, 0);
+        }
+    }
+
+    /**
+     * @return the hello, or {@code null} if the client speaks another version, which should be rejected with {@link #UNSUPPORTED_VERSION}
+     */
+    public static Hello readHello(DataInput in) throws IOException {
+        if (readPreamble(in) != VERSION)
+            return null;
+
+        int count = in.readUnsignedByte();
+        Set<AudioCodec> codecs = EnumSet.noneOf(AudioCodec.class);
+
+        for (int i = 0; i < count; i++) {
+            int ordinal = in.readUnsignedByte();
+
+            if (ordinal < AudioCodec.values().length) {
+                codecs.add(AudioCodec.values()[ordinal]);
+            }
+        }
+
+        int transports = in.readUnsignedByte();
+        String room = in.readUTF();
+        SerializableAudioFormat format = in.readBoolean() ? readFormat(in) : null;
+        return new Hello(codecs, transports, room, format);
+    }
+
+    /**
+     * Welcomes a client that gets its audio over TCP.
+     */
+    public static void writeWelcome(DataOutput out, int clientId, WuzlConfig config) throws IOException {
+        writeWelcome(out, clientId, config, false, 0);
+    }
+
+    /**
+     * @param datagramMedia whether this client sends and receives audio over UDP, which requires {@link WuzlConfig#datagramMedia()}
+     * @param mediaToken    the secret the client proves its datagrams with, see {@link MediaPacket#token(java.nio.ByteBuffer)}
+     */
+    public static void writeWelcome(DataOutput out, int clientId, WuzlConfig config, boolean datagramMedia, long mediaToken) throws IOException {
+        writePreamble(out);
+        out.writeByte(OK);
+        out.writeInt(clientId);
+        out.writeInt(config.bufferSize());
+        writeFormat(out, config.serializableAudioFormat(), config.serverMixing() ? SERVER_MIXING : 0);
+        out.writeByte(config.codec().ordinal());
+        out.writeShort(datagramMedia ? config.mediaPort() : 0);
+        out.writeLong(datagramMedia ? mediaToken : 0);
+    }
+
+    public static void writeRejection(DataOutput out, byte status) throws IOException {
+        writePreamble(out);
+        out.writeByte(status);
+    }
+
+    /**
+     * @param communicationPort the port the client connected to, only kept for {@link WuzlConfig#communicationPort()}
+     * @throws HandshakeException if the server rejected the client
+     */
+    public static Welcome readWelcome(DataInput in, int communicationPort) throws IOException {
+        int version = readPreamble(in);
+        byte status = in.readByte();
+
+        if (status != OK)
+            throw new HandshakeException(status, version);
+
+        int clientId = in.readInt();
+        int bufferSize = in.readInt();
+        float sampleRate = in.readFloat();
+        int sampleSizeInBits = in.readUnsignedByte();
+        int channels = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        int codec = in.readUnsignedByte();
+        int mediaPort = in.readUnsignedShort();
+        long mediaToken = in.readLong();
+
+        if (codec >= AudioCodec.values().length)
+            throw new StreamCorruptedException("Unknown codec: " + codec);
+
+        SerializableAudioFormat format = new SerializableAudioFormat(sampleRate, sampleSizeInBits, channels, (flags & SIGNED) != 0, (flags & BIG_ENDIAN) != 0);
+        WuzlConfig config = new WuzlConfig(communicationPort, bufferSize, format, (flags & SERVER_MIXING) != 0, mediaPort, AudioCodec.values()[codec]);
+        return new Welcome(clientId, config, mediaToken);
+    }
+
+    /**
+     * @param extraFlags flags that are not about the format, sent in the same byte
+     */
+    private static void writeFormat(DataOutput out, SerializableAudioFormat format, int extraFlags) throws IOException {
+        int flags = (format.signed() ? SIGNED : 0)
+                | (format.bigEndian() ? BIG_ENDIAN : 0)
+                | extraFlags;
+
+        out.writeFloat(format.sampleRate());
+        out.writeByte(format.sampleSizeInBits());
+        out.writeByte(format.channels());
+        out.writeByte(flags);
+    }
+
+    /**
+     * Not checked while reading, so the server can answer an unsupported format with {@link #UNSUPPORTED_FORMAT}.
+     */
+    private static SerializableAudioFormat readFormat(DataInput in) throws IOException {
+        float sampleRate = in.readFloat();
+        int sampleSizeInBits = in.readUnsignedByte();
+        int channels = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        return new SerializableAudioFormat(sampleRate, sampleSizeInBits, channels, (flags & SIGNED) != 0, (flags & BIG_ENDIAN) != 0);
+    }
+
+    /**
+     * Whole bytes per sample, so a frame is exactly {@code sampleSizeInBits / 8 * channels} bytes,
+     * and a sample rate a converter can handle, which also rules out NaN and infinity.
+     *
+     * @return whether a server can convert audio from and to {@code format}
+     */
+    public static boolean isSupported(SerializableAudioFormat format) {
+        return format.sampleRate() >= MIN_SAMPLE_RATE && format.sampleRate() <= MAX_SAMPLE_RATE
+                && (format.sampleSizeInBits() == 8 || format.sampleSizeInBits() == 16 || format.sampleSizeInBits() == 24)
+                && (format.channels() == 1 || format.channels() == 2);
+    }
+
+    private static void writePreamble(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+    }
+
+    /**
+     * @return the version of the other side
+     */
+    private static int readPreamble(DataInput in) throws IOException {
+        int magic = in.readInt();
+
+        if (magic != MAGIC)
+            throw new StreamCorruptedException("Not a WuzlServer or WuzlClient: " + Integer.toHexString(magic));
+
+        return in.readUnsignedShort();
+    }
+
+
+    /**
+     * @param transports a combination of {@link #TCP} and {@link #UDP}, and {@link #PEER} if another server links the room
+     * @param room       the room the client wants to join
+     * @param format     the native format of the client's audio devices, or {@code null} if it takes the server's
+     */
+    public record Hello(Set<AudioCodec> codecs, int transports, String room, SerializableAudioFormat format) {
+
+        public boolean supportsDatagrams() {
+            return (transports & UDP) != 0;
+        }
+
+        /**
+         * @return whether this is another node of the cluster, which serves clients of the room itself
+         */
+        public boolean isPeer() {
+            return (transports & PEER) != 0;
+        }
+
+    }
+
+    /**
+     * @param mediaToken the secret to put into every {@link MediaPacket}, 0 if the audio travels over TCP
+     */
+    public record Welcome(int clientId, WuzlConfig config, long mediaToken) {
+    }
+
+    public static class HandshakeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final byte status;
+
+        public HandshakeException(byte status, int serverVersion) {
+            super(switch (status) {
+                case UNSUPPORTED_VERSION -> "Server speaks version " + serverVersion + ", this client speaks version " + VERSION;
+                case UNSUPPORTED_CODEC -> "Server requires a codec this client does not support";
+                case NOT_HOME -> "Server is not the home node of this room";
+                case UNSUPPORTED_FORMAT -> "Server can not convert the audio format of this client";
+                case SERVER_FULL -> "Server has no client id left";
+                default -> "Rejected by server: " + status;
+            });
+            this.status = status;
+        }
+
+
+        public byte getStatus() {
+            return status;
+        }
+
+    }
+
+}
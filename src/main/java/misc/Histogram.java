@@ -0,0 +1,127 @@
+package misc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative long values (e.g. latencies in microseconds) with a relative error below 2%.
+ * <p>
+ * Values below 128 have a bucket each, above that every power of two is split into 64 buckets.
+ * Recording is a single atomic increment and never allocates, so it can be used on hot paths.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS + SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        counts.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    /**
+     * Adds all values of {@code other} to this histogram, e.g. to report percentiles across many clients.
+     * Not atomic, values recorded into {@code other} meanwhile may be partially added.
+     */
+    public void merge(Histogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = other.counts.get(i);
+
+            if (n != 0) {
+                counts.addAndGet(i, n);
+            }
+        }
+
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulateAndGet(other.max(), Math::max);
+    }
+
+    /**
+     * @param percentile in [0, 100]
+     * @return the smallest recorded value (rounded down to its bucket) that {@code percentile} percent of all values are below or equal to
+     */
+    public long percentile(double percentile) {
+        long total = count();
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+
+            if (seen >= rank) {
+                return Math.min(lowerBound(i), max());
+            }
+        }
+
+        return max();
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double mean() {
+        long total = count();
+        return total == 0 ? 0 : (double) sum.sum() / total;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Not atomic, values recorded while resetting may be partially lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return (int) (shift * HALF_SUB_BUCKETS + (value >>> shift));
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long subBucket = index % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return subBucket << shift;
+    }
+
+}
@@ -0,0 +1,161 @@
+package misc;
+
+/**
+ * IMA ADPCM, compressing 16-bit samples to 4 bits.
+ * <p>
+ * Every frame is self-contained, so a lost frame does not corrupt the following ones.
+ * A frame starts with a 4-byte header per channel (predictor as big-endian short, step index, reserved),
+ * followed by one nibble per (interleaved) sample, the low nibble first.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public final class ImaAdpcm {
+    public static final int HEADER_SIZE_PER_CHANNEL = 4;
+
+    private static final int[] INDEX_TABLE = {
+            -1, -1, -1, -1, 2, 4, 6, 8,
+            -1, -1, -1, -1, 2, 4, 6, 8
+    };
+
+    private static final int[] STEP_TABLE = {
+            7, 8, 9, 10, 11, 12, 13, 14, 16, 17,
+            19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+            50, 55, 60, 66, 73, 80, 88, 97, 107, 118,
+            130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+            337, 371, 408, 449, 494, 544, 598, 658, 724, 796,
+            876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+            2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358,
+            5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+            15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+
+    private ImaAdpcm() {
+    }
+
+
+    public static int encodedSize(int sampleCount, int channels) {
+        return HEADER_SIZE_PER_CHANNEL * channels + (sampleCount + 1) / 2;
+    }
+
+    /**
+     * @param samples    16-bit samples, interleaved if there is more than one channel
+     * @param predictors scratch space for the state of every channel, at least {@code channels} long
+     * @param indices    scratch space for the state of every channel, at least {@code channels} long
+     * @return the number of bytes written to {@code target}
+     */
+    public static int encode(short[] samples, int sampleCount, int channels, byte[] target, int[] predictors, int[] indices) {
+        for (int c = 0; c < channels; c++) {
+            int first = c < sampleCount ? samples[c] : 0;
+            int second = c + channels < sampleCount ? samples[c + channels] : first;
+            predictors[c] = first;
+            indices[c] = initialIndex(Math.abs(second - first));
+
+            int h = c * HEADER_SIZE_PER_CHANNEL;
+            target[h] = (byte) (first >> 8);
+            target[h + 1] = (byte) first;
+            target[h + 2] = (byte) indices[c];
+            target[h + 3] = 0;
+        }
+
+        int data = HEADER_SIZE_PER_CHANNEL * channels;
+
+        for (int i = 0; i < sampleCount; i++) {
+            int c = i % channels;
+            int predictor = predictors[c];
+            int index = indices[c];
+            int step = STEP_TABLE[index];
+            int diff = samples[i] - predictor;
+            int nibble = 0;
+
+            if (diff < 0) {
+                nibble = 8;
+                diff = -diff;
+            }
+
+            int delta = step >> 3;
+
+            if (diff >= step) {
+                nibble |= 4;
+                diff -= step;
+                delta += step;
+            }
+
+            step >>= 1;
+
+            if (diff >= step) {
+                nibble |= 2;
+                diff -= step;
+                delta += step;
+            }
+
+            step >>= 1;
+
+            if (diff >= step) {
+                nibble |= 1;
+                delta += step;
+            }
+
+            predictors[c] = clampToShort((nibble & 8) != 0 ? predictor - delta : predictor + delta);
+            indices[c] = clampIndex(index + INDEX_TABLE[nibble]);
+
+            int b = data + (i >> 1);
+            target[b] = (i & 1) == 0 ? (byte) nibble : (byte) (target[b] | (nibble << 4));
+        }
+
+        return encodedSize(sampleCount, channels);
+    }
+
+    /**
+     * @param predictors scratch space for the state of every channel, at least {@code channels} long
+     * @param indices    scratch space for the state of every channel, at least {@code channels} long
+     * @return the number of samples written to {@code target}
+     */
+    public static int decode(byte[] source, int length, int channels, short[] target, int[] predictors, int[] indices) {
+        int data = HEADER_SIZE_PER_CHANNEL * channels;
+        int sampleCount = Math.min((length - data) * 2, target.length);
+
+        for (int c = 0; c < channels; c++) {
+            int h = c * HEADER_SIZE_PER_CHANNEL;
+            predictors[c] = (short) ((source[h] << 8) | (source[h + 1] & 0xFF));
+            indices[c] = clampIndex(source[h + 2]);
+        }
+
+        for (int i = 0; i < sampleCount; i++) {
+            int c = i % channels;
+            int b = source[data + (i >> 1)];
+            int nibble = (i & 1) == 0 ? b & 0x0F : (b >> 4) & 0x0F;
+            int step = STEP_TABLE[indices[c]];
+            int delta = step >> 3;
+
+            if ((nibble & 4) != 0) delta += step;
+            if ((nibble & 2) != 0) delta += step >> 1;
+            if ((nibble & 1) != 0) delta += step >> 2;
+
+            predictors[c] = clampToShort((nibble & 8) != 0 ? predictors[c] - delta : predictors[c] + delta);
+            indices[c] = clampIndex(indices[c] + INDEX_TABLE[nibble]);
+            target[i] = (short) predictors[c];
+        }
+
+        return sampleCount;
+    }
+
+    private static int initialIndex(int difference) {
+        int index = 0;
+
+        while (index < STEP_TABLE.length - 1 && STEP_TABLE[index] < difference) {
+            index++;
+        }
+
+        return index;
+    }
+
+    private static int clampIndex(int index) {
+        return Math.min(Math.max(index, 0), STEP_TABLE.length - 1);
+    }
+
+    private static int clampToShort(int value) {
+        return Math.min(Math.max(value, Short.MIN_VALUE), Short.MAX_VALUE);
+    }
+
+}
@@ -0,0 +1,270 @@
+package misc;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Orders the (encoded) frames of one source by sequence number and hands them out at the pace of the consumer's tick.
+ * Frames arrive numbered ({@link #write(long, byte[], int, int)}), as {@link WireFrame}s or datagrams, which may be lost, reordered or late.
+ * <p>
+ * The buffer adapts its depth to the measured jitter: every underrun increases the target depth by one frame,
+ * and every {@link #SHRINK_AFTER_TICKS} ticks without an underrun it is decreased again,
+ * dropping one frame if more than needed are queued, so latency stays as low as the link allows.
+ * Missing frames are concealed by repeating the last frame once at half volume, after that silence ({@code null}) is returned.
+ * <p>
+ * A source that stopped talking sends a silence marker ({@link #writeSilence(long)}) instead of frames. From that marker on,
+ * the buffer returns silence without counting underruns, until the next talk spurt has filled it up to the target depth again.
+ * <p>
+ * Frames come from a {@link FramePool}, so a warmed up buffer does not allocate.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class JitterBuffer {
+    private static final int MAX_DEPTH = 8;
+    private static final int SHRINK_AFTER_TICKS = 100;
+    private static final Frame SILENCE = new Frame(null, 0, false);
+
+    private final AudioFormat audioFormat;
+    private final FrameCodec codec;
+    private final int bufferSize;
+    private final FramePool pool;
+    private final Frame[] slots;
+    private final long[] slotSequences;
+    private final byte[] pcm;
+    private final int[] samples;
+    private long nextSequence = -1;
+    private long newestSequence = -1;
+    private Frame lastFrame;
+    private int targetDepth;
+    private boolean prefilling;
+    private boolean silent;
+    private int ticksWithoutUnderrun;
+    private long underruns;
+    private long overruns;
+    private long lateFrames;
+    private long lostFrames;
+
+    public JitterBuffer(WuzlConfig config) {
+        this.audioFormat = config.audioFormat();
+        this.codec = config.newCodec();
+        this.bufferSize = config.encodedBufferSize();
+        this.pool = new FramePool(bufferSize, MAX_DEPTH + 4);  // The slots, the last frame, the caller's frame and one being filled
+        this.slots = new Frame[MAX_DEPTH];
+        this.slotSequences = new long[MAX_DEPTH];
+        this.pcm = new byte[config.bufferSize()];
+        this.samples = new int[PcmSamples.sampleCount(audioFormat, config.bufferSize())];
+        this.targetDepth = 1;
+        this.prefilling = true;
+    }
+
+
+    /**
+     * Inserts a numbered frame. Frames that arrive after their turn has passed are dropped.
+     *
+     * @param sequence the sequence number of the frame, consecutive frames have consecutive numbers
+     */
+    public synchronized void write(long sequence, byte[] payload, int offset, int length) {
+        if (length == 0) {
+            writeSilence(sequence);
+            return;
+        }
+
+        if (length != bufferSize) {
+            return;
+        }
+
+        Frame frame = pool.acquire().setLength(bufferSize);
+        System.arraycopy(payload, offset, frame.array(), 0, length);
+        push(sequence, frame);
+    }
+
+    /**
+     * Marks that the source stopped talking, the next frame will have the sequence number after this one.
+     */
+    public synchronized void writeSilence(long sequence) {
+        push(sequence, SILENCE);
+    }
+
+    /**
+     * Takes the next frame, called once per tick.
+     * The caller holds a reference to the returned frame and has to {@link Frame#release()} it.
+     *
+     * @return the next frame, a concealment frame or {@code null} for silence
+     */
+    public synchronized Frame poll() {
+        if (silent) {
+            if (depth() < targetDepth) {
+                return null;
+            }
+
+            silent = false;
+        }
+
+        if (prefilling) {
+            if (depth() < targetDepth) {
+                return conceal();
+            }
+
+            prefilling = false;
+        }
+
+        if (depth() <= 0) {
+            underruns++;
+            targetDepth = Math.min(targetDepth + 1, MAX_DEPTH);
+            ticksWithoutUnderrun = 0;
+            prefilling = true;
+            return conceal();
+        }
+
+        Frame frame = take(nextSequence++);
+
+        if (frame == null) {
+            lostFrames++;  // Newer frames are there, so this one is lost (or too late to wait for it)
+            return conceal();
+        }
+
+        if (frame == SILENCE) {
+            silent = true;
+            remember(null);
+            return null;
+        }
+
+        if (++ticksWithoutUnderrun >= SHRINK_AFTER_TICKS) {
+            ticksWithoutUnderrun = 0;
+            targetDepth = Math.max(targetDepth - 1, 1);
+
+            if (depth() >= targetDepth) {
+                release(take(nextSequence++));  // Catch up, we are running later than needed
+            }
+        }
+
+        remember(frame.retain());
+        return frame;
+    }
+
+    /**
+     * Takes over the reference to {@code frame}.
+     */
+    private void push(long sequence, Frame frame) {
+        if (nextSequence == -1) {
+            nextSequence = sequence;
+        }
+
+        if (sequence < nextSequence) {
+            lateFrames++;
+            frame.release();
+            return;
+        }
+
+        if (sequence >= nextSequence + MAX_DEPTH) {
+            overruns += sequence - MAX_DEPTH + 1 - nextSequence;
+
+            while (nextSequence <= sequence - MAX_DEPTH) {
+                release(take(nextSequence++));
+            }
+        }
+
+        int slot = (int) (sequence % MAX_DEPTH);
+        release(slots[slot]);  // A duplicate, or a frame that was never taken
+        slots[slot] = frame;
+        slotSequences[slot] = sequence;
+        newestSequence = Math.max(newestSequence, sequence);
+    }
+
+    private Frame take(long sequence) {
+        int slot = (int) (sequence % MAX_DEPTH);
+        Frame frame = slots[slot];
+
+        if (frame == null || slotSequences[slot] != sequence) {
+            return null;
+        }
+
+        slots[slot] = null;
+        return frame;
+    }
+
+    private Frame conceal() {
+        if (lastFrame == null) {
+            return null;
+        }
+
+        int pcmLength = codec.decode(lastFrame.array(), bufferSize, pcm);
+        int count = PcmSamples.decode(pcm, pcmLength, samples, audioFormat);
+        remember(null);  // Only conceal once, repeating a frame over and over sounds worse than silence
+
+        for (int i = 0; i < count; i++) {
+            samples[i] >>= 1;
+        }
+
+        Frame frame = pool.acquire().setLength(bufferSize);
+        PcmSamples.encode(samples, count, pcm, audioFormat);
+        codec.encode(pcm, pcmLength, frame.array());
+        return frame;
+    }
+
+    /**
+     * Keeps a reference to the frame to conceal the next missing one with.
+     */
+    private void remember(Frame frame) {
+        release(lastFrame);
+        lastFrame = frame;
+    }
+
+    private static void release(Frame frame) {
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+
+    /**
+     * @return the number of frames between the next frame to play and the newest frame received, including gaps
+     */
+    public synchronized int depth() {
+        return nextSequence == -1 ? 0 : (int) (newestSequence - nextSequence + 1);
+    }
+
+    /**
+     * @return whether the source is silent, i.e. its last frame was a silence marker
+     */
+    public synchronized boolean isSilent() {
+        return silent;
+    }
+
+    /**
+     * @return how many frames the buffer currently aims to hold, grows with the jitter of the source
+     */
+    public synchronized int targetDepth() {
+        return targetDepth;
+    }
+
+    public synchronized long underruns() {
+        return underruns;
+    }
+
+    /**
+     * @return the number of frames dropped because the source ran too far ahead
+     */
+    public synchronized long overruns() {
+        return overruns;
+    }
+
+    /**
+     * @return the number of frames dropped because their turn had already passed
+     */
+    public synchronized long lateFrames() {
+        return lateFrames;
+    }
+
+    public synchronized long lostFrames() {
+        return lostFrames;
+    }
+
+    /**
+     * @return how many frames this buffer allocated so far, this stops growing once it is warmed up
+     */
+    public long allocatedFrames() {
+        return pool.allocations();
+    }
+
+}
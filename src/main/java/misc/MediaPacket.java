@@ -0,0 +1,64 @@
+package misc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of the audio datagrams that travel alongside the TCP connection if {@link WuzlConfig#datagramMedia()} is enabled.
+ * <pre>
+ * int  source id  (0 = server)
+ * int  sequence number, incremented by one per frame
+ * long timestamp in nanoseconds of the sender's clock ({@link System#nanoTime()})
+ * long media token (0 = server)
+ * byte[] payload (empty if the sender is silent, see {@link WireFrame#SILENCE})
+ * </pre>
+ * The source id alone is easy to guess, so the server only takes a datagram from the address of the client's TCP connection,
+ * and only with the token the client was given in its {@link Handshake} welcome.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public final class MediaPacket {
+    public static final int HEADER_SIZE = 24;
+    public static final int SERVER_ID = 0;
+    public static final int MAX_SIZE = 65507;  // The largest UDP payload over IPv4, clients may use larger frames than the server
+
+    private MediaPacket() {
+    }
+
+
+    /**
+     * Clears {@code packet} and writes the header, the payload is expected to be put afterwards.
+     */
+    public static void writeHeader(ByteBuffer packet, int sourceId, int sequence, long timestamp, long token) {
+        packet.clear();
+        packet.putInt(sourceId);
+        packet.putInt(sequence);
+        packet.putLong(timestamp);
+        packet.putLong(token);
+    }
+
+    public static int sourceId(ByteBuffer packet) {
+        return packet.getInt(0);
+    }
+
+    public static int sequence(ByteBuffer packet) {
+        return packet.getInt(4);
+    }
+
+    public static long timestamp(ByteBuffer packet) {
+        return packet.getLong(8);
+    }
+
+    public static long token(ByteBuffer packet) {
+        return packet.getLong(16);
+    }
+
+    /**
+     * @param packet a flipped packet
+     * @return the number of payload bytes
+     */
+    public static int payloadLength(ByteBuffer packet) {
+        return packet.limit() - HEADER_SIZE;
+    }
+
+}
@@ -0,0 +1,210 @@
+package misc;
+
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A registry of named counters, gauges and {@link Histogram}s.
+ * <p>
+ * Metrics are looked up once, when a client connects or a room opens, and kept in fields afterwards,
+ * so the hot paths only increment a {@link LongAdder} or record into a {@link Histogram} and never allocate.
+ * Gauges are only read when the metrics are exported.
+ * Names are dot-separated, e.g. {@code client.7.frames_in}. Everything of one client or room is registered through a {@link Scope},
+ * which removes exactly the metrics it registered when the client or room goes away.
+ * <p>
+ * Exported through JMX with {@link #registerMBean(String)} and as plain text with {@link #serveHttp(int)}.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class Metrics {
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+
+    /**
+     * @return the counter with this name, created if it does not exist yet
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * @return the histogram with this name, created if it does not exist yet
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Replaces a gauge with the same name.
+     *
+     * @param value read whenever the metrics are exported, from any thread
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @param prefix the first parts of the names, e.g. {@code "room." + Metrics.escape(name)}
+     * @return a view that registers metrics under {@code prefix.}
+     */
+    public Scope scope(String prefix) {
+        return new Scope(prefix + ".");
+    }
+
+    public void remove(String name) {
+        counters.remove(name);
+        gauges.remove(name);
+        histograms.remove(name);
+    }
+
+    /**
+     * Encodes everything but letters, digits, {@code _} and {@code -} like in a URL,
+     * so a name from outside (e.g. a room name) is a single part of a metric name, without spaces or dots.
+     */
+    public static String escape(String part) {
+        StringBuilder escaped = new StringBuilder(part.length());
+
+        for (byte b : part.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+
+            if (c < 128 && (Character.isLetterOrDigit(c) || c == '_' || c == '-')) {
+                escaped.append(c);
+            } else {
+                escaped.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16))).append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            }
+        }
+
+        return escaped.toString();
+    }
+
+    /**
+     * Histograms are flattened into {@code name.count}, {@code name.mean}, {@code name.p50}, {@code name.p90}, {@code name.p99} and {@code name.max}.
+     *
+     * @return the current value of every metric, sorted by name
+     */
+    public Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.count());
+            values.put(name + ".mean", histogram.mean());
+
+            for (double percentile : PERCENTILES) {
+                values.put(name + ".p" + (int) percentile, histogram.percentile(percentile));
+            }
+
+            values.put(name + ".max", histogram.max());
+        });
+        return values;
+    }
+
+    /**
+     * @return one {@code name value} line per metric
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        snapshot().forEach((name, value) -> text.append(name).append(' ').append(value).append('\n'));
+        return text.toString();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, so they show up in JConsole or VisualVM.
+     *
+     * @param name the name of the MBean, e.g. {@code server}
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        ObjectName objectName = new ObjectName("voiceoverwuzl:type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), objectName);
+        return objectName;
+    }
+
+    /**
+     * Serves {@link #toText()} on {@code http://localhost:port/metrics}, on a thread of its own.
+     * Only reachable from this machine, nobody has to log in to read the metrics.
+     *
+     * @return the running server, stop it with {@link HttpServer#stop(int)}
+     */
+    public HttpServer serveHttp(int port) throws IOException {
+        return serveHttp(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * @param address where to serve the metrics, e.g. the wildcard address for every interface, which anyone on the network can read
+     * @return the running server, stop it with {@link HttpServer#stop(int)}
+     */
+    public HttpServer serveHttp(InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = toText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+
+    /**
+     * The metrics of one client or room, all under the same prefix.
+     */
+    public class Scope {
+        private final String prefix;
+        private final Set<String> names = ConcurrentHashMap.newKeySet();
+
+        private Scope(String prefix) {
+            this.prefix = prefix;
+        }
+
+
+        public LongAdder counter(String name) {
+            return Metrics.this.counter(own(name));
+        }
+
+        public Histogram histogram(String name) {
+            return Metrics.this.histogram(own(name));
+        }
+
+        public void gauge(String name, LongSupplier value) {
+            Metrics.this.gauge(own(name), value);
+        }
+
+        /**
+         * Removes the metrics registered through this scope, and no others, even if their names start alike.
+         */
+        public void removeAll() {
+            names.forEach(Metrics.this::remove);
+            names.clear();
+        }
+
+        private String own(String name) {
+            String fullName = prefix + name;
+            names.add(fullName);
+            return fullName;
+        }
+    }
+
+}
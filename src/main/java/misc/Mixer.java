@@ -0,0 +1,128 @@
+package misc;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Arrays;
+
+/**
+ * Mixes any number of PCM streams sample by sample, according to the bit depth, endianness and signedness of the {@link AudioFormat}.
+ * <p>
+ * Samples are accumulated in an int array, which is soft-clipped back into the range of the format when mixing:
+ * below the knee at 3/4 of full scale the signal passes unchanged, above it the signal is compressed smoothly
+ * towards full scale, instead of being cut off hard, which would sound like crackling.
+ * The inner loops are simple array operations without branches or calls that can not be inlined,
+ * so the JIT can vectorize them.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class Mixer {
+    private static final float KNEE = 0.75f;
+
+    private final AudioFormat audioFormat;
+    private final int sampleCount;
+    private final int[] sum;
+    private final int[] samples;
+    private final float knee;
+    private final float headroom;
+
+    /**
+     * @param bufferSize the size of a frame in bytes
+     */
+    public Mixer(AudioFormat audioFormat, int bufferSize) {
+        this.audioFormat = audioFormat;
+        this.sampleCount = PcmSamples.sampleCount(audioFormat, bufferSize);
+        this.sum = new int[sampleCount];
+        this.samples = new int[sampleCount];
+        this.knee = PcmSamples.maxValue(audioFormat) * KNEE;
+        this.headroom = PcmSamples.maxValue(audioFormat) - knee;
+    }
+
+
+    /**
+     * Starts a new mix.
+     */
+    public void clear() {
+        Arrays.fill(sum, 0);
+    }
+
+    /**
+     * Adds a PCM frame to the mix.
+     */
+    public void add(byte[] pcm, int length) {
+        int count = decode(pcm, length, samples);
+        accumulate(samples, count);
+    }
+
+    /**
+     * Adds already decoded samples to the mix, see {@link #decode(byte[], int, int[])}.
+     */
+    public void add(int[] samples) {
+        accumulate(samples, sampleCount);
+    }
+
+    /**
+     * @param target at least {@link #sampleCount()} long, the rest is filled with silence if the frame is shorter
+     * @return the number of samples decoded
+     */
+    public int decode(byte[] pcm, int length, int[] target) {
+        int count = PcmSamples.decode(pcm, Math.min(length, target.length * PcmSamples.bytesPerSample(audioFormat)), target, audioFormat);
+        Arrays.fill(target, count, sampleCount, 0);
+        return count;
+    }
+
+    /**
+     * Writes the mix of everything added since {@link #clear()} to {@code target}.
+     *
+     * @return the number of bytes written
+     */
+    public int mix(byte[] target) {
+        softClip(sum, samples);
+        return PcmSamples.encode(samples, sampleCount, target, audioFormat);
+    }
+
+    /**
+     * Writes the mix of everything added since {@link #clear()}, except {@code own}, to {@code target}.
+     * This is how every listener gets a mix without its own voice, while the sum is only built once.
+     *
+     * @param own samples that were added before, see {@link #add(int[])}
+     * @return the number of bytes written
+     */
+    public int mixWithout(int[] own, byte[] target) {
+        for (int i = 0; i < sampleCount; i++) {
+            samples[i] = sum[i] - own[i];
+        }
+
+        softClip(samples, samples);
+        return PcmSamples.encode(samples, sampleCount, target, audioFormat);
+    }
+
+    private void accumulate(int[] source, int count) {
+        for (int i = 0; i < count; i++) {
+            sum[i] += source[i];
+        }
+    }
+
+    /**
+     * {@code y = x} up to the knee, {@code y = knee + headroom * d / (d + headroom)} above it, where {@code d} is the excess.
+     * The curve is continuous, has a slope of 1 at the knee and approaches full scale without ever reaching it.
+     */
+    private void softClip(int[] source, int[] target) {
+        for (int i = 0; i < sampleCount; i++) {
+            float x = source[i];
+            float magnitude = Math.abs(x);
+            float excess = Math.max(magnitude - knee, 0.0f);
+            float shaped = Math.min(magnitude, knee) + headroom * excess / (excess + headroom);
+            target[i] = (int) Math.copySign(shaped, x);
+        }
+    }
+
+
+    public int sampleCount() {
+        return sampleCount;
+    }
+
+    public AudioFormat audioFormat() {
+        return audioFormat;
+    }
+
+}
@@ -0,0 +1,109 @@
+package misc;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Converts between raw PCM bytes and int samples, honoring the bit depth, endianness and signedness of an {@link AudioFormat}.
+ * Samples are kept in the native range of the format (e.g. -32768..32767 for signed 16-bit).
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public final class PcmSamples {
+
+    private PcmSamples() {
+    }
+
+
+    public static int bytesPerSample(AudioFormat format) {
+        return (format.getSampleSizeInBits() + 7) / 8;
+    }
+
+    public static int sampleCount(AudioFormat format, int byteCount) {
+        return byteCount / bytesPerSample(format);
+    }
+
+    public static int minValue(AudioFormat format) {
+        return -(1 << (format.getSampleSizeInBits() - 1));
+    }
+
+    public static int maxValue(AudioFormat format) {
+        return (1 << (format.getSampleSizeInBits() - 1)) - 1;
+    }
+
+    /**
+     * Decodes {@code byteCount} bytes of {@code source} into {@code target}.
+     * Unsigned formats are shifted into the signed range so that silence is always 0.
+     *
+     * @return the number of samples written to {@code target}
+     */
+    public static int decode(byte[] source, int byteCount, int[] target, AudioFormat format) {
+        int bytesPerSample = bytesPerSample(format);
+        int bits = format.getSampleSizeInBits();
+        int shift = 32 - bits;
+        int offset = isSigned(format) ? 0 : 1 << (bits - 1);
+        boolean bigEndian = format.isBigEndian();
+        int samples = byteCount / bytesPerSample;
+
+        if (bytesPerSample == 2 && offset == 0) {
+            int hi = bigEndian ? 0 : 1;
+            int lo = 1 - hi;
+
+            for (int i = 0; i < samples; i++) {
+                target[i] = (short) ((source[2 * i + hi] << 8) | (source[2 * i + lo] & 0xFF));
+            }
+
+            return samples;
+        }
+
+        for (int i = 0, b = 0; i < samples; i++, b += bytesPerSample) {
+            int value = 0;
+
+            for (int k = 0; k < bytesPerSample; k++) {
+                int index = bigEndian ? b + k : b + bytesPerSample - 1 - k;
+                value = (value << 8) | (source[index] & 0xFF);
+            }
+
+            target[i] = offset == 0 ? (value << shift) >> shift : value - offset;
+        }
+
+        return samples;
+    }
+
+    /**
+     * Encodes {@code sampleCount} samples of {@code source} into {@code target}, clamping each sample to the range of the format.
+     *
+     * @return the number of bytes written to {@code target}
+     */
+    public static int encode(int[] source, int sampleCount, byte[] target, AudioFormat format) {
+        return encode(source, sampleCount, target, 0, format);
+    }
+
+    /**
+     * Same as {@link #encode(int[], int, byte[], AudioFormat)}, but starts writing at {@code targetOffset}.
+     */
+    public static int encode(int[] source, int sampleCount, byte[] target, int targetOffset, AudioFormat format) {
+        int bytesPerSample = bytesPerSample(format);
+        int min = minValue(format);
+        int max = maxValue(format);
+        int offset = isSigned(format) ? 0 : 1 << (format.getSampleSizeInBits() - 1);
+        boolean bigEndian = format.isBigEndian();
+
+        for (int i = 0, b = targetOffset; i < sampleCount; i++, b += bytesPerSample) {
+            int value = Math.min(Math.max(source[i], min), max) + offset;
+
+            for (int k = bytesPerSample - 1; k >= 0; k--) {
+                int index = bigEndian ? b + k : b + bytesPerSample - 1 - k;
+                target[index] = (byte) value;
+                value >>= 8;
+            }
+        }
+
+        return sampleCount * bytesPerSample;
+    }
+
+    private static boolean isSigned(AudioFormat format) {
+        return format.getEncoding() != AudioFormat.Encoding.PCM_UNSIGNED;
+    }
+
+}
@@ -1,13 +1,14 @@
 package misc;
 
 import javax.sound.sampled.AudioFormat;
-import java.io.Serializable;
 
 /**
+ * The fields of an {@link AudioFormat} that travel in the {@link Handshake}.
+ *
  * @author : Emilio Zottel (4AHIF)
  * @since : 08.11.2022, Di.
  **/
-public record SerializableAudioFormat(float sampleRate, int sampleSizeInBits, int channels, boolean signed, boolean bigEndian) implements Serializable {
+public record SerializableAudioFormat(float sampleRate, int sampleSizeInBits, int channels, boolean signed, boolean bigEndian) {
 
     public AudioFormat toAudioFormat() {
         return new AudioFormat(
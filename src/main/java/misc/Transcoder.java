@@ -0,0 +1,118 @@
+package misc;
+
+/**
+ * Converts the audio of one client between its own format and codec, as announced in the {@link Handshake},
+ * and the server's, so clients with different devices can share a room.
+ * Frames coming from the client are converted before they are mixed, the mix is converted for every converting listener on its own.
+ * If both formats are the same, frames are only encoded and passed through.
+ * <p>
+ * One instance per client, {@link #toServer} and {@link #toClient} may be called by different threads, but each only by one at a time.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class Transcoder {
+    private final boolean identity;
+    private final FrameCodec clientInputCodec;
+    private final FrameCodec serverInputCodec;
+    private final FrameCodec clientOutputCodec;
+    private final FormatConverter input;
+    private final FormatConverter output;
+    private final FramePool converted;
+    private final byte[] clientInputPcm;
+    private final byte[] serverInputPcm;
+    private final byte[] clientOutputPcm;
+    private final byte[] encoded;
+
+    /**
+     * @param client the config of the client, see {@link WuzlConfig#withAudioFormat}
+     */
+    public Transcoder(WuzlConfig client, WuzlConfig server) {
+        this.identity = client.audioFormat().matches(server.audioFormat()) && client.bufferSize() == server.bufferSize() && client.codec() == server.codec();
+        this.clientOutputCodec = client.newCodec();
+        this.encoded = new byte[client.encodedBufferSize()];
+
+        if (identity) {
+            this.clientInputCodec = null;
+            this.serverInputCodec = null;
+            this.input = null;
+            this.output = null;
+            this.converted = null;
+            this.clientInputPcm = null;
+            this.serverInputPcm = null;
+            this.clientOutputPcm = null;
+            return;
+        }
+
+        this.clientInputCodec = client.newCodec();
+        this.serverInputCodec = server.newCodec();
+        this.input = new FormatConverter(client.audioFormat(), client.bufferSize(), server.audioFormat(), server.bufferSize());
+        this.output = new FormatConverter(server.audioFormat(), server.bufferSize(), client.audioFormat(), client.bufferSize());
+        this.converted = new FramePool(server.encodedBufferSize(), 4);  // The room holds the last one, the recorder may hold a few
+        this.clientInputPcm = new byte[client.bufferSize()];
+        this.serverInputPcm = new byte[server.bufferSize()];
+        this.clientOutputPcm = new byte[client.bufferSize()];
+    }
+
+
+    /**
+     * @param frame a frame encoded by the client, the reference to it is taken over
+     * @return the frame encoded in the server's format and codec, which the caller has to release
+     */
+    public Frame toServer(Frame frame) {
+        if (identity) {
+            return frame;
+        }
+
+        try {
+            int pcmLength = clientInputCodec.decode(frame.array(), frame.length(), clientInputPcm);
+            int serverLength = input.convert(clientInputPcm, pcmLength, serverInputPcm);
+            Frame result = converted.acquire();
+            return result.setLength(serverInputCodec.encode(serverInputPcm, serverLength, result.array()));
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * @param pcm a frame of the mix in the server's format
+     * @return the frame encoded in the client's format and codec, reused by the next call
+     */
+    public byte[] toClient(byte[] pcm, int length) {
+        if (identity) {
+            clientOutputCodec.encode(pcm, length, encoded);
+            return encoded;
+        }
+
+        int clientLength = output.convert(pcm, length, clientOutputPcm);
+        clientOutputCodec.encode(clientOutputPcm, clientLength, encoded);
+        return encoded;
+    }
+
+    /**
+     * Called when the client is silent, so its next frame does not start with the tail of the last one.
+     */
+    public void resetInput() {
+        if (input != null) {
+            input.reset();
+        }
+    }
+
+    /**
+     * Called when the client hears silence.
+     */
+    public void resetOutput() {
+        if (output != null) {
+            output.reset();
+        }
+    }
+
+
+    /**
+     * @return whether the client uses the server's format and codec, so the frames of the server can be sent as they are
+     */
+    public boolean isIdentity() {
+        return identity;
+    }
+
+}
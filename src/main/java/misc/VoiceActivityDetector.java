@@ -0,0 +1,100 @@
+package misc;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Decides per frame whether someone is talking, from the frame's energy and zero-crossing rate.
+ * <p>
+ * A frame is voice if its level is {@link #THRESHOLD_DB} above the noise floor and above {@link #MIN_LEVEL_DB}.
+ * Noise-like frames (many zero crossings, e.g. a fan or hiss) need another {@link #NOISY_MARGIN_DB} on top.
+ * The noise floor follows quiet frames immediately and rises slowly otherwise, so steady background noise
+ * is learned within seconds, while speech barely moves it.
+ * After the last voice frame, frames are still reported as voice for {@link #HANGOVER_NANOS},
+ * so quiet word endings and short pauses are not cut off.
+ * <p>
+ * Not thread-safe, allocation-free.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class VoiceActivityDetector {
+    private static final double THRESHOLD_DB = 9.0;
+    private static final double MIN_LEVEL_DB = -55.0;  // dB below full scale
+    private static final double NOISY_ZERO_CROSSING_RATE = 0.35;  // Crossings per sample, speech is well below
+    private static final double NOISY_MARGIN_DB = 6.0;
+    private static final double FLOOR_RISE_DB_PER_SECOND = 1.0;
+    private static final long HANGOVER_NANOS = 300_000_000;
+
+    private final AudioFormat audioFormat;
+    private final int channels;
+    private final int[] samples;
+    private final double fullScale;
+    private final double floorRisePerFrame;
+    private final int hangoverFrames;
+    private double noiseFloorDb = MIN_LEVEL_DB;
+    private int hangover;
+
+    public VoiceActivityDetector(WuzlConfig config) {
+        this.audioFormat = config.audioFormat();
+        this.channels = audioFormat.getChannels();
+        this.samples = new int[PcmSamples.sampleCount(audioFormat, config.bufferSize())];
+        this.fullScale = PcmSamples.maxValue(audioFormat);
+        this.floorRisePerFrame = FLOOR_RISE_DB_PER_SECOND * config.frameDurationNanos() / 1e9;
+        this.hangoverFrames = (int) Math.ceil((double) HANGOVER_NANOS / config.frameDurationNanos());
+    }
+
+
+    /**
+     * Called once per captured frame, in order.
+     *
+     * @return whether the frame should be sent
+     */
+    public boolean isVoice(byte[] pcm, int length) {
+        int count = PcmSamples.decode(pcm, Math.min(length, samples.length * PcmSamples.bytesPerSample(audioFormat)), samples, audioFormat);
+
+        if (count == 0) {
+            return false;
+        }
+
+        long sumOfSquares = 0;
+        int crossings = 0;
+
+        for (int i = 0; i < count; i++) {
+            int sample = samples[i];
+            sumOfSquares += (long) sample * sample;
+
+            if (i >= channels && (sample ^ samples[i - channels]) < 0) {  // Sign changed within the same channel
+                crossings++;
+            }
+        }
+
+        double rms = Math.sqrt((double) sumOfSquares / count) / fullScale;
+        double levelDb = 20 * Math.log10(Math.max(rms, 1e-9));
+        double zeroCrossingRate = (double) crossings / count;
+
+        double threshold = Math.max(noiseFloorDb + THRESHOLD_DB, MIN_LEVEL_DB);
+        if (zeroCrossingRate > NOISY_ZERO_CROSSING_RATE)
+            threshold += NOISY_MARGIN_DB;
+
+        boolean voice = levelDb > threshold;
+        noiseFloorDb = Math.min(noiseFloorDb + floorRisePerFrame, levelDb);
+
+        if (voice) {
+            hangover = hangoverFrames;
+            return true;
+        }
+
+        if (hangover > 0) {
+            hangover--;
+            return true;
+        }
+
+        return false;
+    }
+
+
+    public double noiseFloorDb() {
+        return noiseFloorDb;
+    }
+
+}
@@ -0,0 +1,104 @@
+package misc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of the frames on the TCP connection, in both directions. Every frame starts with a fixed-size header:
+ * <pre>
+ * byte  type            ({@link #AUDIO}, {@link #SILENCE}, {@link #PING}, {@link #PONG})
+ * byte  flags           ({@link #END_OF_TICK})
+ * short source id       (unsigned, 0 = server)
+ * int   sequence number
+ * long  timestamp in nanoseconds of the sender's clock ({@link System#nanoTime()})
+ * int   payload length  (bytes following the header)
+ * </pre>
+ * The server ends the frames of every tick with {@link #END_OF_TICK}: a mix carries it itself,
+ * forwarded frames are followed by a {@link #SILENCE} frame that carries it, and a tick without audio is that frame alone.
+ * A client that stops talking sends one {@link #SILENCE} frame instead of silent audio, and nothing until it talks again.
+ * Header and payload are always written together, so a frame never spans more TCP segments than necessary.
+ * <p>
+ * Clients stamp their frames with the time the first sample was captured.
+ * To measure the round trip and the offset between both clocks, a client sends a {@link #PING} stamped with its clock,
+ * the server answers between two ticks with a {@link #PONG}, stamped right before it is written, whose payload is:
+ * <pre>
+ * long  timestamp of the ping, echoed
+ * long  when the server received the ping, in its clock
+ * int   frames in the server's jitter buffer of this client
+ * </pre>
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public final class WireFrame {
+    public static final int HEADER_SIZE = 20;
+
+    public static final byte SILENCE = 0;  // No payload, the receiver may play comfort noise
+    public static final byte AUDIO = 1;
+    public static final byte PING = 2;     // No payload
+    public static final byte PONG = 3;     // Never ends a tick
+    public static final int PONG_SIZE = 20;
+
+    public static final byte END_OF_TICK = 1;
+
+    private WireFrame() {
+    }
+
+
+    /**
+     * Writes a header at the current position of {@code target}.
+     */
+    public static void writeHeader(ByteBuffer target, byte type, byte flags, int sourceId, int sequence, long timestamp, int payloadLength) {
+        target.put(type);
+        target.put(flags);
+        target.putShort((short) sourceId);
+        target.putInt(sequence);
+        target.putLong(timestamp);
+        target.putInt(payloadLength);
+    }
+
+    /**
+     * @param frames whole frames, from index 0 to the limit
+     * @return the number of frames
+     */
+    public static int countFrames(ByteBuffer frames) {
+        int count = 0;
+
+        for (int offset = 0; offset + HEADER_SIZE <= frames.limit(); offset += HEADER_SIZE + frames.getInt(offset + 16)) {
+            count++;
+        }
+
+        return count;
+    }
+
+    public static byte type(ByteBuffer header) {
+        return header.get(0);
+    }
+
+    public static boolean isEndOfTick(ByteBuffer header) {
+        return (header.get(1) & END_OF_TICK) != 0;
+    }
+
+    public static int sourceId(ByteBuffer header) {
+        return Short.toUnsignedInt(header.getShort(2));
+    }
+
+    public static int sequence(ByteBuffer header) {
+        return header.getInt(4);
+    }
+
+    public static long timestamp(ByteBuffer header) {
+        return header.getLong(8);
+    }
+
+    /**
+     * Overwrites the timestamp of an already written header, e.g. to stamp a frame right before it is sent.
+     */
+    public static void setTimestamp(ByteBuffer header, long timestamp) {
+        header.putLong(8, timestamp);
+    }
+
+    public static int payloadLength(ByteBuffer header) {
+        return header.getInt(16);
+    }
+
+}
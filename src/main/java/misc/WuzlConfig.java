@@ -1,27 +1,55 @@
 package misc;
 
 import javax.sound.sampled.*;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.Serial;
-import java.io.Serializable;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
+ * The server's settings, sent to every client in the {@link Handshake}.
+ *
  * @author : Emilio Zottel (4AHIF)
  * @since : 07.11.2022, Mo.
  **/
-public class WuzlConfig implements Serializable {
-    private final transient int communicationPort;
+public class WuzlConfig {
+    private static final float[] DEVICE_SAMPLE_RATES = {44100, 48000, 32000, 22050, 16000};
+    private static final List<AudioCodec> CODEC_PREFERENCE = List.of(AudioCodec.ULAW, AudioCodec.ALAW, AudioCodec.IMA_ADPCM, AudioCodec.PCM);
+
+    private final int communicationPort;
     private final int bufferSize;
     private final SerializableAudioFormat serializableAudioFormat;
-    private transient AudioFormat audioFormat;
+    private final boolean serverMixing;
+    private final int mediaPort;
+    private final AudioCodec codec;
+    private final AudioFormat audioFormat;
 
-    public WuzlConfig(int communicationPort, int bufferSize, SerializableAudioFormat serializableAudioFormat) {
+    /**
+     * @param serverMixing whether the server mixes the audio for every listener (one frame per tick),
+     *                     or forwards the raw audio of every other client (one frame per speaker per tick)
+     * @param mediaPort    the UDP port audio is sent over, or 0 to send audio over the TCP connection.
+     *                     Sending audio over UDP implies server mixing
+     * @param codec        the preferred codec, falls back to {@link AudioCodec#PCM} if it does not support the audio format
+     */
+    public WuzlConfig(int communicationPort, int bufferSize, SerializableAudioFormat serializableAudioFormat, boolean serverMixing, int mediaPort, AudioCodec codec) {
         this.communicationPort = communicationPort;
         this.bufferSize = bufferSize;
         this.audioFormat = serializableAudioFormat.toAudioFormat();
         this.serializableAudioFormat = serializableAudioFormat;
+        this.serverMixing = serverMixing || mediaPort != 0;
+        this.mediaPort = mediaPort;
+        this.codec = codec.supports(audioFormat) ? codec : AudioCodec.PCM;
+    }
+
+    public WuzlConfig(int communicationPort, int bufferSize, SerializableAudioFormat serializableAudioFormat, boolean serverMixing, int mediaPort) {
+        this(communicationPort, bufferSize, serializableAudioFormat, serverMixing, mediaPort, AudioCodec.PCM);
+    }
+
+    public WuzlConfig(int communicationPort, int bufferSize, SerializableAudioFormat serializableAudioFormat, boolean serverMixing) {
+        this(communicationPort, bufferSize, serializableAudioFormat, serverMixing, 0);
+    }
+
+    public WuzlConfig(int communicationPort, int bufferSize, SerializableAudioFormat serializableAudioFormat) {
+        this(communicationPort, bufferSize, serializableAudioFormat, false);
     }
 
 
@@ -35,10 +63,83 @@ public class WuzlConfig implements Serializable {
                         1,
                         true,
                         true
-                )
+                ),
+                true,
+                0,
+                AudioCodec.ULAW  // Half the bytes of 16-bit PCM
         );
     }
 
+    /**
+     * Probes the default audio devices, preferring the server's default format so nothing has to be converted.
+     *
+     * @return a signed 16-bit format that both the default input and output device support
+     */
+    public static Optional<SerializableAudioFormat> deviceFormat() {
+        for (float sampleRate : DEVICE_SAMPLE_RATES) {
+            for (int channels = 1; channels <= 2; channels++) {
+                for (boolean bigEndian : new boolean[]{true, false}) {
+                    var format = new SerializableAudioFormat(sampleRate, 16, channels, true, bigEndian);
+                    AudioFormat audioFormat = format.toAudioFormat();
+
+                    if (AudioSystem.isLineSupported(new DataLine.Info(TargetDataLine.class, audioFormat))
+                            && AudioSystem.isLineSupported(new DataLine.Info(SourceDataLine.class, audioFormat))) {
+                        return Optional.of(format);
+                    }
+                }
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * A frame in the new format lasts as long as one in this config, so a client in that format ticks along with the server.
+     *
+     * @return this config for a client whose audio is in {@code format}, with the same codec if it supports the format
+     * @throws ArithmeticException if a frame in that format does not fit into an int, see {@link Handshake#isSupported}
+     */
+    public WuzlConfig withAudioFormat(SerializableAudioFormat format) {
+        if (format.equals(serializableAudioFormat)) {
+            return this;
+        }
+
+        AudioFormat target = format.toAudioFormat();
+        long frames = Math.round((double) bufferSize / audioFormat.getFrameSize() * target.getFrameRate() / audioFormat.getFrameRate());
+        return new WuzlConfig(communicationPort, Math.toIntExact(frames * target.getFrameSize()), format, serverMixing, mediaPort, codec);
+    }
+
+    /**
+     * The codec of this config comes first, then the compressing codecs, {@link AudioCodec#PCM} last.
+     *
+     * @param offered the codecs the other side supports
+     * @return the best codec of {@code offered} that supports the audio format, or empty if there is none
+     */
+    public Optional<AudioCodec> negotiateCodec(Set<AudioCodec> offered) {
+        if (offered.contains(codec)) {
+            return Optional.of(codec);
+        }
+
+        for (AudioCodec candidate : CODEC_PREFERENCE) {
+            if (offered.contains(candidate) && candidate.supports(audioFormat)) {
+                return Optional.of(candidate);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @return this config with another codec, or with {@link AudioCodec#PCM} if {@code codec} does not support the audio format
+     */
+    public WuzlConfig withCodec(AudioCodec codec) {
+        if (codec == this.codec) {
+            return this;
+        }
+
+        return new WuzlConfig(communicationPort, bufferSize, serializableAudioFormat, serverMixing, mediaPort, codec);
+    }
+
     public Optional<TargetDataLine> defaultInputDevice() throws LineUnavailableException {
         try {
             return Optional.of(AudioSystem.getTargetDataLine(audioFormat));
@@ -56,23 +157,63 @@ public class WuzlConfig implements Serializable {
     }
 
 
-    @Serial
-    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject();
-        audioFormat = serializableAudioFormat.toAudioFormat();
-    }
-
-
     public int communicationPort() {
         return communicationPort;
     }
 
+    /**
+     * @return the size of a frame in bytes before encoding, i.e. how much is read from and written to an audio device at once
+     */
     public int bufferSize() {
         return bufferSize;
     }
 
+    /**
+     * @return the size of a frame in bytes on the wire, after encoding it with {@link #codec()}
+     */
+    public int encodedBufferSize() {
+        return codec.encodedSize(audioFormat, bufferSize);
+    }
+
     public AudioFormat audioFormat() {
         return audioFormat;
     }
 
+    public SerializableAudioFormat serializableAudioFormat() {
+        return serializableAudioFormat;
+    }
+
+    /**
+     * @return how long it takes to play back one buffer of {@link #bufferSize()} bytes
+     */
+    public long frameDurationNanos() {
+        return (long) (bufferSize / (audioFormat.getFrameSize() * (double) audioFormat.getFrameRate()) * 1e9);
+    }
+
+    public boolean serverMixing() {
+        return serverMixing;
+    }
+
+    public AudioCodec codec() {
+        return codec;
+    }
+
+    /**
+     * @return a new codec instance for the negotiated codec and format, every thread coding frames needs its own
+     */
+    public FrameCodec newCodec() {
+        return codec.newCodec(audioFormat, bufferSize);
+    }
+
+    public int mediaPort() {
+        return mediaPort;
+    }
+
+    /**
+     * @return whether audio travels in datagrams on {@link #mediaPort()} instead of over the TCP connection
+     */
+    public boolean datagramMedia() {
+        return mediaPort != 0;
+    }
+
 }
@@ -0,0 +1,107 @@
+package server;
+
+import client.ClientSocket;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * The clients of a room, changed without locks and read as immutable snapshots.
+ * A tick works on the snapshot it took, so clients joining and leaving never wait for a tick, and a tick never waits for them.
+ * Changes copy the list, which is cheap because they are rare compared to ticks, and reading a snapshot does not allocate.
+ * <p>
+ * Once closed, the registry takes no clients anymore, so nobody can join a room that is just closing.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class ClientRegistry {
+    private final AtomicReference<State> state = new AtomicReference<>(new State(List.of(), false));
+
+
+    /**
+     * @return {@code false} if the registry was closed
+     */
+    public boolean add(ClientSocket client) {
+        while (true) {
+            State current = state.get();
+
+            if (current.closed()) {
+                return false;
+            }
+
+            List<ClientSocket> clients = new ArrayList<>(current.clients());
+            clients.add(client);
+
+            if (state.compareAndSet(current, new State(List.copyOf(clients), false))) {
+                return true;
+            }
+        }
+    }
+
+    public void removeAll(Collection<ClientSocket> removed) {
+        while (true) {
+            State current = state.get();
+            List<ClientSocket> clients = new ArrayList<>(current.clients());
+
+            if (!clients.removeAll(removed) || state.compareAndSet(current, new State(List.copyOf(clients), current.closed()))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes the registry only if {@code condition} holds for the clients at that very moment,
+     * e.g. if nobody joined since the snapshot that said the room is empty.
+     *
+     * @return whether this call closed the registry
+     */
+    public boolean closeIf(Predicate<List<ClientSocket>> condition) {
+        while (true) {
+            State current = state.get();
+
+            if (current.closed()) {
+                return false;
+            }
+
+            if (!condition.test(current.clients())) {
+                return false;
+            }
+
+            if (state.compareAndSet(current, new State(current.clients(), true))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if it was closed before
+     */
+    public boolean close() {
+        return closeIf(clients -> true);
+    }
+
+
+    /**
+     * @return the clients at this moment, an immutable list that never changes
+     */
+    public List<ClientSocket> snapshot() {
+        return state.get().clients();
+    }
+
+    public int size() {
+        return snapshot().size();
+    }
+
+    public boolean isClosed() {
+        return state.get().closed();
+    }
+
+
+    private record State(List<ClientSocket> clients, boolean closed) {
+    }
+
+}
@@ -0,0 +1,60 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Queue;
+
+/**
+ * Hands out the ids of clients, which travel as an unsigned short in every {@link misc.WireFrame} and {@link misc.MediaPacket},
+ * so there are never more than {@link #MAX_ID} of them at once and two clients never share an id.
+ * Ids that were given back are handed out again in the order they came back, so an id is reused as late as possible,
+ * and listeners have long forgotten its previous owner.
+ * <p>
+ * Thread-safe.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class IdPool {
+    public static final int MAX_ID = 0xFFFF;
+    public static final int NONE = -1;
+
+    private final BitSet used = new BitSet(MAX_ID + 1);
+    private final Queue<Integer> released = new ArrayDeque<>();
+    private int next;
+
+    /**
+     * @param first the lowest id handed out, the ones below are reserved
+     */
+    public IdPool(int first) {
+        this.next = first;
+    }
+
+
+    /**
+     * @return an id nobody else has, or {@link #NONE} if all of them are taken
+     */
+    public synchronized int acquire() {
+        Integer id = next <= MAX_ID ? Integer.valueOf(next++) : released.poll();
+
+        if (id == null) {
+            return NONE;
+        }
+
+        used.set(id);
+        return id;
+    }
+
+    /**
+     * Giving back an id twice, or one that was never handed out, does nothing.
+     */
+    public synchronized void release(int id) {
+        if (id < 0 || id > MAX_ID || !used.get(id)) {
+            return;
+        }
+
+        used.clear(id);
+        released.add(id);
+    }
+
+}
@@ -0,0 +1,21 @@
+package server;
+
+import client.ClientSocket;
+
+/**
+ * Sends the frames mixed by a {@link ServerMixer} to the listeners.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+@FunctionalInterface
+public interface MixSender {
+
+    /**
+     * @param frame  the encoded mix for this listener, or {@code null} if nobody else is talking, so the listener only needs a silence marker.
+     *               It is reused afterwards, so it has to be copied
+     * @param shared whether other listeners get the same frame in this tick, so it only needs to be prepared once
+     */
+    void send(ClientSocket listener, byte[] frame, boolean shared);
+
+}
@@ -0,0 +1,224 @@
+package server;
+
+import misc.Frame;
+import misc.Metrics;
+import misc.WuzlConfig;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records rooms to disk, every room into a {@link Recording} of its own.
+ * <p>
+ * Rooms only hand their frames over to a bounded queue, without copying them and without waiting,
+ * a single writer thread does all the disk work. If the writer falls behind, frames are dropped from the recording,
+ * but live audio is never delayed and memory stays bounded.
+ * The entries of the queue are preallocated and reused, so handing a frame over allocates nothing on the tick thread.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class Recorder implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 1024;  // Frames
+    private static final long CLOSE_CHECK_MILLIS = 100;
+    private static final int CLOSE = -1;  // Source id of the entry that closes a recording
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+    private final WuzlConfig config;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<Entry> spare = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Set<Recording> recordings = ConcurrentHashMap.newKeySet();
+    private final Queue<Recording> closing = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private final LongAdder recordedFrames;
+    private final LongAdder droppedFrames;
+    private volatile boolean running = true;
+
+    /**
+     * @param directory where every room gets a directory of its own
+     * @param metrics   where the recorder's metrics are registered, as {@code recorder.*}
+     */
+    public Recorder(Path directory, WuzlConfig config, Metrics metrics) {
+        this.directory = directory;
+        this.config = config;
+
+        while (spare.offer(new Entry())) {
+            // One for every place in the queue, so the queue itself never overflows
+        }
+
+        this.recordedFrames = metrics.counter("recorder.frames");
+        this.droppedFrames = metrics.counter("recorder.dropped_frames");
+        metrics.gauge("recorder.queue_depth", queue::size);
+        this.writer = new Thread(this::writeLoop, "recorder");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+
+    /**
+     * Starts a new recording, in a directory named after the room and the current time.
+     */
+    public Recording open(String room) throws IOException {
+        String name = room.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + LocalDateTime.now().format(TIMESTAMP);
+        Recording recording = new Recording(this, directory.resolve(name), config);
+        recordings.add(recording);
+        return recording;
+    }
+
+    /**
+     * Never blocks, the frame is dropped from the recording if the queue is full.
+     *
+     * @param frame a reference that is taken over, or {@code null} for the end of a tick
+     */
+    void offer(Recording recording, int sourceId, int sequence, long timestamp, Frame frame) {
+        Entry entry = running ? spare.poll() : null;
+
+        if (entry != null) {
+            entry.set(recording, sourceId, sequence, timestamp, frame);
+            queue.add(entry);
+            return;
+        }
+
+        droppedFrames.increment();
+
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    /**
+     * The recording is closed by the writer thread, after the frames queued before.
+     * If the queue is full, it is closed right away and the frames still queued are dropped.
+     */
+    void closeLater(Recording recording) {
+        Entry entry = spare.poll();
+
+        if (entry == null) {
+            closing.add(recording);
+            return;
+        }
+
+        entry.set(recording, CLOSE, 0, 0, null);
+        queue.add(entry);
+    }
+
+    private void writeLoop() {
+        try {
+            while (running) {
+                Entry entry = queue.poll(CLOSE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (entry != null) {
+                    write(entry);
+                }
+
+                closePending();
+            }
+        } catch (InterruptedException e) {
+            // Closed, write what is left
+        }
+
+        Entry entry;
+
+        while ((entry = queue.poll()) != null) {
+            write(entry);
+        }
+
+        closing.addAll(recordings);
+        closePending();
+    }
+
+    private void write(Entry entry) {
+        Recording recording = entry.recording;
+        int sourceId = entry.sourceId;
+        int sequence = entry.sequence;
+        long timestamp = entry.timestamp;
+        Frame frame = entry.frame;
+        entry.set(null, 0, 0, 0, null);
+        spare.add(entry);
+
+        if (sourceId == CLOSE) {
+            closing.add(recording);
+            closePending();
+            return;
+        }
+
+        try {
+            recording.write(sourceId, sequence, timestamp, frame);
+            recordedFrames.increment();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Only the writer thread touches the files, so other threads leave the closing to it.
+     */
+    private void closePending() {
+        Recording recording;
+
+        while ((recording = closing.poll()) != null) {
+            if (!recordings.remove(recording)) {
+                continue;
+            }
+
+            try {
+                recording.finish();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+
+    /**
+     * Stops recording, frames already queued are still written.
+     * Waits for the writer even if the calling thread is interrupted, the interrupt is kept for the caller.
+     */
+    @Override
+    public void close() {
+        running = false;
+        writer.interrupt();
+        boolean interrupted = false;
+
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private static final class Entry {
+        private Recording recording;
+        private int sourceId;
+        private int sequence;
+        private long timestamp;
+        private Frame frame;
+
+        private void set(Recording recording, int sourceId, int sequence, long timestamp, Frame frame) {
+            this.recording = recording;
+            this.sourceId = sourceId;
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.frame = frame;
+        }
+    }
+
+}
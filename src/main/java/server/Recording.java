@@ -0,0 +1,211 @@
+package server;
+
+import misc.Frame;
+import misc.FrameCodec;
+import misc.Handshake;
+import misc.MediaPacket;
+import misc.Mixer;
+import misc.WuzlConfig;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The recording of one room, a directory with these files:
+ * <pre>
+ * format          the config of the server, written as a {@link Handshake} welcome
+ * index           one entry per frame, in the order they were written:
+ *                 long timestamp ({@link System#nanoTime()} of the tick), int tick sequence,
+ *                 int source id ({@link MediaPacket#SERVER_ID} = the mix), int segment, int offset, int length
+ * segment-00000   the encoded frames back to back, {@link #SEGMENT_SIZE} bytes at most
+ * segment-00001   ...
+ * </pre>
+ * Every client's frames are recorded as they arrived, silent clients have no frames.
+ * The mix of everyone, as heard by a listener who does not talk, is recorded once per tick, with an empty frame if nobody talked.
+ * Segments are memory-mapped, so appending a frame is a copy into the page cache.
+ * <p>
+ * The room hands frames over with {@link #record} and {@link #endTick}, everything else runs on the writer thread of the {@link Recorder}.
+ * The end of a tick can be dropped like any frame when the writer falls behind, so a frame of a newer tick closes the tick before it,
+ * and the frames of two ticks are never mixed together.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class Recording {
+    public static final String FORMAT_FILE = "format";
+    public static final String INDEX_FILE = "index";
+    public static final int INDEX_ENTRY_SIZE = 28;
+    public static final int SEGMENT_SIZE = 16 << 20;
+
+    private final Recorder recorder;
+    private final Path directory;
+    private final FrameCodec codec;
+    private final Mixer mixer;
+    private final byte[] pcm;
+    private final byte[] encoded;
+    private final DataOutputStream index;
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private int segmentNumber = -1;
+    private int talkers;
+    private boolean tickOpen;  // Frames of the tick below were written, but not its mix yet
+    private int tickSequence;
+    private long tickTimestamp;
+    private boolean finished;
+
+    Recording(Recorder recorder, Path directory, WuzlConfig config) throws IOException {
+        this.recorder = recorder;
+        this.directory = directory;
+        this.codec = config.newCodec();
+        this.mixer = new Mixer(config.audioFormat(), config.bufferSize());
+        this.pcm = new byte[config.bufferSize()];
+        this.encoded = new byte[config.encodedBufferSize()];
+
+        Files.createDirectories(directory);
+
+        try (var format = new DataOutputStream(Files.newOutputStream(directory.resolve(FORMAT_FILE)))) {
+            Handshake.writeWelcome(format, MediaPacket.SERVER_ID, config);
+        }
+
+        this.index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(INDEX_FILE))));
+    }
+
+
+    /**
+     * Queues a frame of a client, without copying it and without waiting.
+     */
+    public void record(int sourceId, int sequence, long timestamp, Frame frame) {
+        recorder.offer(this, sourceId, sequence, timestamp, frame.retain());
+    }
+
+    /**
+     * Queues the end of a tick, which is when the mix of the tick is recorded.
+     */
+    public void endTick(int sequence, long timestamp) {
+        recorder.offer(this, MediaPacket.SERVER_ID, sequence, timestamp, null);
+    }
+
+    /**
+     * Finishes the recording after everything queued so far was written.
+     */
+    public void close() {
+        recorder.closeLater(this);
+    }
+
+    /**
+     * Writer thread only.
+     *
+     * @param frame a reference that is released here, or {@code null} for the end of the tick
+     */
+    void write(int sourceId, int sequence, long timestamp, Frame frame) throws IOException {
+        if (tickOpen && sequence != tickSequence) {
+            writeMix(tickSequence, tickTimestamp);  // Its end was dropped
+        }
+
+        if (frame == null) {
+            writeMix(sequence, timestamp);
+            return;
+        }
+
+        try {
+            if (finished) {
+                return;
+            }
+
+            tickOpen = true;
+            tickSequence = sequence;
+            tickTimestamp = timestamp;
+            append(sourceId, sequence, timestamp, frame.array(), frame.length());
+            int pcmLength = codec.decode(frame.array(), frame.length(), pcm);
+            mixer.add(pcm, pcmLength);
+            talkers++;
+        } finally {
+            frame.release();
+        }
+    }
+
+    private void writeMix(int sequence, long timestamp) throws IOException {
+        if (finished) {
+            return;
+        }
+
+        int length = talkers == 0 ? 0 : codec.encode(pcm, mixer.mix(pcm), encoded);
+        append(MediaPacket.SERVER_ID, sequence, timestamp, encoded, length);
+        index.flush();  // Once per tick, so a crash loses at most the frames of one tick
+        mixer.clear();
+        talkers = 0;
+        tickOpen = false;
+    }
+
+    private void append(int sourceId, int sequence, long timestamp, byte[] payload, int length) throws IOException {
+        if (segment == null || segment.remaining() < length) {
+            nextSegment();
+        }
+
+        index.writeLong(timestamp);
+        index.writeInt(sequence);
+        index.writeInt(sourceId);
+        index.writeInt(segmentNumber);
+        index.writeInt(segment.position());
+        index.writeInt(length);
+        segment.put(payload, 0, length);
+    }
+
+    private void nextSegment() throws IOException {
+        closeSegment();
+        segmentNumber++;
+        segmentChannel = FileChannel.open(directory.resolve(segmentName(segmentNumber)), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+
+        int used = segment.position();
+        segment.force();
+        segment = null;
+
+        try {
+            segmentChannel.truncate(used);
+        } catch (IOException e) {
+            // Not every OS can shrink a mapped file, the index still says where the frames end
+        }
+
+        segmentChannel.close();
+    }
+
+    /**
+     * Writer thread only.
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+
+        if (tickOpen) {
+            writeMix(tickSequence, tickTimestamp);
+        }
+
+        finished = true;
+        closeSegment();
+        index.close();
+    }
+
+    public static String segmentName(int number) {
+        return String.format("segment-%05d", number);
+    }
+
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+}
@@ -0,0 +1,233 @@
+package server;
+
+import misc.FrameCodec;
+import misc.Handshake;
+import misc.MediaPacket;
+import misc.PcmSamples;
+import misc.WuzlConfig;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads a {@link Recording} and exports the track of a single client, or the mix, as WAV:
+ * <pre>
+ * java -cp target/classes server.RecordingReader &lt;recording directory&gt; &lt;file.wav&gt; [source id, 0 = mix]
+ * </pre>
+ * Every track covers the whole recording, ticks in which a client was silent or a frame was dropped are filled with silence,
+ * so the tracks of one recording line up.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class RecordingReader {
+    private final Path directory;
+    private final WuzlConfig config;
+    private final ByteBuffer index;
+    private final Map<Integer, ByteBuffer> segments = new HashMap<>();
+    private final int entries;
+    private final int firstSequence;
+    private final int lastSequence;
+
+    public RecordingReader(Path directory) throws IOException {
+        this.directory = directory;
+
+        try (var format = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(Recording.FORMAT_FILE))))) {
+            this.config = Handshake.readWelcome(format, 0).config();
+        }
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(Recording.INDEX_FILE))) {
+            long size = channel.size() - channel.size() % Recording.INDEX_ENTRY_SIZE;  // Without a partly written last entry
+            this.index = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            this.entries = (int) (size / Recording.INDEX_ENTRY_SIZE);
+        }
+
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+
+        for (int entry = 0; entry < entries; entry++) {
+            first = Math.min(first, sequence(entry));
+            last = Math.max(last, sequence(entry));
+        }
+
+        this.firstSequence = first;
+        this.lastSequence = last;
+    }
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RecordingReader <recording directory> <file.wav> [source id, 0 = mix]");
+            return;
+        }
+
+        var reader = new RecordingReader(Path.of(args[0]));
+        int sourceId = args.length > 2 ? Integer.parseInt(args[2]) : MediaPacket.SERVER_ID;
+        reader.exportWav(sourceId, new File(args[1]));
+        System.out.println("Sources: " + reader.sources() + ", exported " + sourceId + " to " + args[1]);
+    }
+
+
+    /**
+     * @return the ids of every client that was recorded, and {@link MediaPacket#SERVER_ID} for the mix
+     */
+    public Set<Integer> sources() {
+        Set<Integer> sources = new TreeSet<>();
+
+        for (int entry = 0; entry < entries; entry++) {
+            sources.add(sourceId(entry));
+        }
+
+        return sources;
+    }
+
+    /**
+     * Decodes the frames while the stream is read, so tracks of any length can be exported.
+     *
+     * @return the track of {@code sourceId} in the {@link WuzlConfig#audioFormat()} of the recording
+     */
+    public AudioInputStream stream(int sourceId) {
+        AudioFormat format = config.audioFormat();
+        long ticks = entries == 0 ? 0 : (long) lastSequence - firstSequence + 1;
+        return new AudioInputStream(new Track(sourceId), format, ticks * config.bufferSize() / format.getFrameSize());
+    }
+
+    public void exportWav(int sourceId, File file) throws IOException {
+        try (AudioInputStream stream = stream(sourceId)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file);
+        }
+    }
+
+    /**
+     * @return the number of bytes copied to {@code target}, the encoded frame
+     */
+    public int read(int entry, byte[] target) throws IOException {
+        int length = length(entry);
+        segment(segmentNumber(entry)).get(offset(entry), target, 0, length);
+        return length;
+    }
+
+    private ByteBuffer segment(int number) throws IOException {
+        ByteBuffer segment = segments.get(number);
+
+        if (segment == null) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(Recording.segmentName(number)))) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            segments.put(number, segment);
+        }
+
+        return segment;
+    }
+
+
+    public WuzlConfig getConfig() {
+        return config;
+    }
+
+    public int entryCount() {
+        return entries;
+    }
+
+    public long timestamp(int entry) {
+        return index.getLong(entry * Recording.INDEX_ENTRY_SIZE);
+    }
+
+    public int sequence(int entry) {
+        return index.getInt(entry * Recording.INDEX_ENTRY_SIZE + 8);
+    }
+
+    public int sourceId(int entry) {
+        return index.getInt(entry * Recording.INDEX_ENTRY_SIZE + 12);
+    }
+
+    private int segmentNumber(int entry) {
+        return index.getInt(entry * Recording.INDEX_ENTRY_SIZE + 16);
+    }
+
+    private int offset(int entry) {
+        return index.getInt(entry * Recording.INDEX_ENTRY_SIZE + 20);
+    }
+
+    public int length(int entry) {
+        return index.getInt(entry * Recording.INDEX_ENTRY_SIZE + 24);
+    }
+
+
+    /**
+     * One frame of PCM per tick, from the first to the last tick of the recording.
+     */
+    private class Track extends InputStream {
+        private final int sourceId;
+        private final FrameCodec codec = config.newCodec();
+        private final byte[] encoded = new byte[config.encodedBufferSize()];
+        private final byte[] pcm = new byte[config.bufferSize()];
+        private final byte[] silence = new byte[config.bufferSize()];
+        private byte[] frame = silence;
+        private int position;
+        private int length;
+        private int entry;
+        private long nextSequence = firstSequence;
+
+        Track(int sourceId) {
+            this.sourceId = sourceId;
+            int samples = PcmSamples.sampleCount(config.audioFormat(), config.bufferSize());
+            PcmSamples.encode(new int[samples], samples, silence, config.audioFormat());
+        }
+
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position == length && !nextFrame()) {
+                return -1;
+            }
+
+            int n = Math.min(len, length - position);
+            System.arraycopy(frame, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private boolean nextFrame() throws IOException {
+            if (entries == 0 || nextSequence > lastSequence) {
+                return false;
+            }
+
+            while (entry < entries && (sourceId(entry) != sourceId || sequence(entry) < nextSequence)) {
+                entry++;
+            }
+
+            if (entry < entries && sequence(entry) == nextSequence && length(entry) > 0) {
+                codec.decode(encoded, RecordingReader.this.read(entry, encoded), pcm);
+                frame = pcm;
+            } else {
+                frame = silence;
+            }
+
+            nextSequence++;
+            position = 0;
+            length = config.bufferSize();
+            return true;
+        }
+
+    }
+
+}
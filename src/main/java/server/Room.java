@@ -0,0 +1,449 @@
+package server;
+
+import client.ClientSocket;
+import misc.Frame;
+import misc.FramePool;
+import misc.Histogram;
+import misc.MediaPacket;
+import misc.Metrics;
+import misc.WireFrame;
+import misc.WuzlConfig;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One conversation: the clients in it only hear each other.
+ * Every room ticks on its own, so many rooms spread across the threads of the shared scheduler,
+ * and a room that takes long to mix only delays itself.
+ * Clients join and leave through a {@link ClientRegistry}, every tick works on a snapshot of it, so nobody waits for anyone.
+ * <p>
+ * The frames of every tick are written into pooled direct {@link Frame}s, so a room that is warmed up does not allocate,
+ * and a frame that several listeners hear is prepared once and written to all of their sockets without being copied again.
+ * When forwarding, every client's frame is copied once per tick, whatever the number of listeners.
+ * <p>
+ * In a cluster, a room whose home is another node has an uplink to it, which takes part like any other client:
+ * it brings the mix of everyone on the home node, and gets the mix of the clients here, each side without its own audio.
+ * The uplink is attached once it is connected, until then the clients here only hear each other.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class Room {
+    private static final int POOL_CAPACITY = 256;  // Ticks, enough for every listener's outbound queue in all but huge rooms
+
+    private final String name;
+    private final ClientRegistry clients = new ClientRegistry();
+    private final ServerMixer mixer;
+    private final DatagramChannel mediaChannel;
+    private final ByteBuffer mediaPacket;
+    private final FramePool ticks;
+    private final int encodedBufferSize;
+    private final long frameDurationNanos;
+    private final WuzlServer server;
+    private final Metrics.Scope metrics;
+    private final Histogram tickMicros;
+    private final LongAdder tickCount;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile ScheduledFuture<?> ticker;
+    private final Recording recording;
+    private final SpeakerSelector speakers;
+    private final LongAdder discardedFrames;
+    private volatile ClientSocket uplink;
+    private Frame sharedMix;
+    private Frame sharedSilence;
+    private int[] forwardedFrom = new int[0];  // Where the frame of every client starts and ends in the forwarded tick
+    private int[] forwardedTo = new int[0];
+    private byte[] packetFrame;
+    private boolean packetShared;
+    private int tickSequence;
+
+    /**
+     * @param mediaChannel the server's UDP channel, or {@code null} if audio only travels over TCP
+     * @param server       is told about clients leaving and the room closing, the room's metrics go into its registry
+     */
+    Room(String name, WuzlConfig config, DatagramChannel mediaChannel, WuzlServer server) {
+        this.name = name;
+        this.mixer = config.serverMixing() ? new ServerMixer(config) : null;
+        this.mediaChannel = mediaChannel;
+        this.mediaPacket = ByteBuffer.allocateDirect(MediaPacket.MAX_SIZE);  // Clients in a format of their own may get larger frames
+        this.encodedBufferSize = config.encodedBufferSize();
+        this.ticks = new FramePool(WireFrame.HEADER_SIZE + encodedBufferSize, POOL_CAPACITY, true);
+        this.frameDurationNanos = config.frameDurationNanos();
+        this.server = server;
+        this.metrics = server.getMetrics().scope("room." + Metrics.escape(name));
+        this.tickMicros = metrics.histogram("tick_micros");
+        this.tickCount = metrics.counter("ticks");
+        this.recording = startRecording(server.getRecorder());
+        this.speakers = new SpeakerSelector(config, server.getMaxSpeakers());
+        this.discardedFrames = metrics.counter("discarded_frames");
+        metrics.gauge("clients", this::size);
+        metrics.gauge("allocated_frames", ticks::allocations);
+        metrics.gauge("max_speakers", speakers::getMaxSpeakers);
+    }
+
+
+    /**
+     * A room that can not be recorded still opens, live audio matters more.
+     *
+     * @return {@code null} if the room is not recorded
+     */
+    private Recording startRecording(Recorder recorder) {
+        if (recorder == null) {
+            return null;
+        }
+
+        try {
+            return recorder.open(name);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Adds the client and starts ticking once per frame on {@code scheduler}, if this is the first client.
+     *
+     * @return {@code false} if the room was closed in the meantime, because everyone left
+     */
+    public boolean join(ClientSocket client, ScheduledExecutorService scheduler) {
+        if (!clients.add(client)) {
+            return false;
+        }
+
+        if (started.compareAndSet(false, true)) {
+            // One tick per buffer, so frames leave the server at exactly the rate they are played back
+            ticker = scheduler.scheduleAtFixedRate(this::tick, 0, frameDurationNanos, TimeUnit.NANOSECONDS);
+
+            if (clients.isClosed()) {
+                ticker.cancel(false);  // Closed before the ticker was known, so nobody else could cancel it
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Links the room to its home node in a cluster, see {@link WuzlServer}.
+     *
+     * @return {@code false} if the room was closed in the meantime, the link is not needed anymore then
+     */
+    boolean attachUplink(ClientSocket uplink) {
+        this.uplink = uplink;  // Before it joins, so the room never takes it for a client who stays
+
+        if (clients.add(uplink)) {
+            return true;
+        }
+
+        this.uplink = null;
+        return false;
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+
+        try {
+            broadcastEach();
+            tickMicros.record((System.nanoTime() - start) / 1000);
+            tickCount.increment();
+        } catch (RuntimeException e) {
+            e.printStackTrace();  // Do not let a single tick cancel all future ticks
+        }
+    }
+
+    /**
+     * Never waits for a client, frames that did not arrive in time are concealed by the client's jitter buffer.
+     */
+    private void broadcastEach() {
+        List<ClientSocket> clientList = removeInactive(clients.snapshot());
+
+        if (isAbandoned(clientList)) {
+            if (clients.closeIf(this::isAbandoned)) {  // Unless someone joined just now
+                finishClosing();
+            }
+
+            return;
+        }
+
+        if (clientList.size() == 1) {
+            return;
+        }
+
+        clientList.forEach(ClientSocket::pollBuffer);
+        tickSequence++;
+
+        if (recording != null) {
+            record(clientList);  // Every track, the selection only applies to what listeners hear
+        }
+
+        discardedFrames.add(speakers.select(clientList));
+
+        if (mixer != null) {
+            packetShared = false;
+            mixer.mixAndSend(clientList, speakers, this::sendMix);
+            releaseSharedTicks();
+        } else {
+            forward(clientList);
+        }
+    }
+
+    /**
+     * @return the clients that are still active, a new snapshot if someone left
+     */
+    private List<ClientSocket> removeInactive(List<ClientSocket> clientList) {
+        List<ClientSocket> inactive = null;
+
+        for (ClientSocket client : clientList) {
+            if (!client.isActive()) {
+                if (inactive == null) {
+                    inactive = new ArrayList<>();
+                }
+
+                inactive.add(client);
+            }
+        }
+
+        if (inactive == null) {
+            return clientList;
+        }
+
+        clients.removeAll(inactive);
+        inactive.forEach(this::disconnect);
+        return clients.snapshot();
+    }
+
+    /**
+     * @return whether no client is left, only the uplink counts as nobody
+     */
+    private boolean isAbandoned(List<ClientSocket> clientList) {
+        return clientList.isEmpty() || clientList.size() == 1 && clientList.get(0) == uplink;
+    }
+
+    /**
+     * Only hands the frames of this tick over, the {@link Recorder} writes them on its own thread.
+     */
+    private void record(List<ClientSocket> clientList) {
+        long timestamp = System.nanoTime();
+
+        for (ClientSocket client : clientList) {
+            Frame frame = client.getBuffer();
+
+            if (frame != null) {
+                recording.record(client.getId(), tickSequence, timestamp, frame);
+            }
+        }
+
+        recording.endTick(tickSequence, timestamp);
+    }
+
+    private void disconnect(ClientSocket client) {
+        client.printDisconnectMessage();
+        server.clientLeft(client);
+
+        try {
+            client.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A shared frame is copied into a tick once, every listener that hears it gets a reference to the same tick.
+     *
+     * @param frame the mix for this listener, or {@code null} if nobody else is talking
+     */
+    private void sendMix(ClientSocket listener, byte[] frame, boolean shared) {
+        if (mediaChannel == null || !listener.isDatagramMedia()) {
+            if (!shared) {
+                listener.send(tickOf(frame));
+            } else if (frame == null) {
+                if (sharedSilence == null) {
+                    sharedSilence = tickOf(null);
+                }
+
+                listener.send(sharedSilence.retain());
+            } else {
+                if (sharedMix == null) {
+                    sharedMix = tickOf(frame);
+                }
+
+                listener.send(sharedMix.retain());
+            }
+
+            return;
+        }
+
+        SocketAddress address = listener.getMediaAddress();
+
+        if (address == null) {
+            return;  // No datagram arrived from this client yet, so we do not know where to send it to
+        }
+
+        if (!shared || !packetShared || packetFrame != frame) {
+            MediaPacket.writeHeader(mediaPacket, MediaPacket.SERVER_ID, tickSequence, System.nanoTime(), 0);
+
+            if (frame != null) {
+                mediaPacket.put(frame);
+            }
+
+            mediaPacket.flip();
+            packetFrame = frame;
+            packetShared = shared;
+        }
+
+        mediaPacket.position(0);
+
+        try {
+            mediaChannel.send(mediaPacket, address);
+        } catch (IOException e) {
+            listener.setActive(false);
+        }
+    }
+
+    /**
+     * @return a new tick holding only {@code frame}, or a silence marker if it is {@code null}
+     */
+    private Frame tickOf(byte[] frame) {
+        Frame tick = ticks.acquire(WireFrame.HEADER_SIZE + (frame == null ? 0 : frame.length));
+        ByteBuffer out = tick.buffer();
+
+        if (frame == null) {
+            WireFrame.writeHeader(out, WireFrame.SILENCE, WireFrame.END_OF_TICK, MediaPacket.SERVER_ID, tickSequence, System.nanoTime(), 0);
+        } else {
+            WireFrame.writeHeader(out, WireFrame.AUDIO, WireFrame.END_OF_TICK, MediaPacket.SERVER_ID, tickSequence, System.nanoTime(), frame.length);
+            out.put(frame);
+        }
+
+        return tick.setLength(out.position());
+    }
+
+    /**
+     * Gives up the room's own references, the shared ticks return to the pool once every listener sent them.
+     */
+    private void releaseSharedTicks() {
+        if (sharedMix != null) {
+            sharedMix.release();
+            sharedMix = null;
+        }
+
+        if (sharedSilence != null) {
+            sharedSilence.release();
+            sharedSilence = null;
+        }
+    }
+
+    /**
+     * Copies the frame of every client that sent one into a single tick, once, which every listener shares without its own frame.
+     * The tick ends with a silence marker, so it still ends with {@link WireFrame#END_OF_TICK} whichever frame a listener skips.
+     */
+    private void forward(List<ClientSocket> clientList) {
+        Frame tick = ticks.acquire(clientList.size() * (WireFrame.HEADER_SIZE + encodedBufferSize) + WireFrame.HEADER_SIZE);
+        ByteBuffer out = tick.buffer();
+        long timestamp = System.nanoTime();
+
+        if (forwardedFrom.length < clientList.size()) {
+            forwardedFrom = new int[clientList.size() * 2];
+            forwardedTo = new int[clientList.size() * 2];
+        }
+
+        for (int i = 0; i < clientList.size(); i++) {
+            ClientSocket source = clientList.get(i);
+            Frame frame = source.getBuffer();
+            forwardedFrom[i] = out.position();
+
+            if (frame != null) {
+                WireFrame.writeHeader(out, WireFrame.AUDIO, (byte) 0, source.getId(), tickSequence, timestamp, frame.length());
+                out.put(frame.array(), 0, frame.length());
+            }
+
+            forwardedTo[i] = out.position();
+        }
+
+        WireFrame.writeHeader(out, WireFrame.SILENCE, WireFrame.END_OF_TICK, MediaPacket.SERVER_ID, tickSequence, timestamp, 0);
+        tick.setLength(out.position());
+
+        for (int i = 0; i < clientList.size(); i++) {
+            clientList.get(i).send(tick.retain(), forwardedFrom[i], forwardedTo[i]);
+        }
+
+        tick.release();
+    }
+
+    /**
+     * Stops ticking, clients can not join anymore.
+     */
+    public void close() {
+        if (clients.close()) {
+            finishClosing();
+        }
+    }
+
+    /**
+     * Called once, by whoever closed the registry.
+     */
+    private void finishClosing() {
+        metrics.removeAll();  // Before anyone can open a room with the same name
+        ScheduledFuture<?> ticker = this.ticker;
+
+        if (ticker != null) {
+            ticker.cancel(false);
+        }
+
+        if (recording != null) {
+            recording.close();
+        }
+
+        ClientSocket uplink = this.uplink;
+
+        if (uplink != null) {
+            try {
+                uplink.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            if (clients.snapshot().contains(uplink)) {
+                server.clientLeft(uplink);  // Otherwise it was disconnected before, and already left
+            }
+        }
+
+        server.roomClosed(this);
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return clients.size();
+    }
+
+    public boolean isClosed() {
+        return clients.isClosed();
+    }
+
+    /**
+     * @param maxSpeakers how many of the loudest speakers are heard at once, {@link SpeakerSelector#UNLIMITED} to hear everyone
+     */
+    public void setMaxSpeakers(int maxSpeakers) {
+        speakers.setMaxSpeakers(maxSpeakers);
+    }
+
+    /**
+     * @return the link to the room's home node, or {@code null} if the room is mixed here
+     */
+    public ClientSocket getUplink() {
+        return uplink;
+    }
+
+}
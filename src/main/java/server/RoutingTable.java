@@ -0,0 +1,150 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns every room of a cluster to its home node, the {@link WuzlServer} that mixes it.
+ * Other nodes serve their own clients of the room and link it to the home node, so audio crosses at most one hop.
+ * Every node of a cluster should load the same table, a node only accepts links for rooms it is the home of.
+ * <p>
+ * Rooms can be pinned to a node, all other rooms are spread across the nodes by rendezvous hashing,
+ * so every node finds the same home without asking anyone, and adding a node only moves the rooms that now belong to it.
+ * The file lists the nodes by their communication port, and optionally pinned rooms:
+ * <pre>
+ * # Comments and empty lines are ignored
+ * node localhost:27005
+ * node localhost:27006
+ * room lobby localhost:27005
+ * </pre>
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class RoutingTable {
+    private final InetSocketAddress self;
+    private final List<InetSocketAddress> nodes;
+    private final Map<String, InetSocketAddress> pinned = new ConcurrentHashMap<>();
+
+    /**
+     * @param self  the address other nodes reach this node at, one of {@code nodes}
+     * @param nodes every node of the cluster
+     */
+    public RoutingTable(InetSocketAddress self, List<InetSocketAddress> nodes) {
+        if (!nodes.contains(self))
+            throw new IllegalArgumentException("This node is not part of the cluster: " + self);
+
+        this.self = self;
+        this.nodes = List.copyOf(nodes);
+    }
+
+
+    public static RoutingTable load(Path file, InetSocketAddress self) throws IOException {
+        List<InetSocketAddress> nodes = new ArrayList<>();
+        List<String[]> rooms = new ArrayList<>();
+
+        for (String line : Files.readAllLines(file)) {
+            String[] words = line.strip().split("\\s+");
+
+            if (words[0].isEmpty() || words[0].startsWith("#")) {
+                continue;
+            }
+
+            switch (words[0]) {
+                case "node" -> nodes.add(parseAddress(words[1]));
+                case "room" -> rooms.add(words);
+                default -> throw new IOException("Unknown entry in " + file + ": " + line);
+            }
+        }
+
+        RoutingTable table = new RoutingTable(self, nodes);
+
+        for (String[] room : rooms) {
+            table.pin(room[1], parseAddress(room[2]));
+        }
+
+        return table;
+    }
+
+    /**
+     * @param address {@code host:port}
+     */
+    public static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+
+    /**
+     * Only affects rooms that are opened afterwards.
+     */
+    public void pin(String room, InetSocketAddress node) {
+        if (!nodes.contains(node))
+            throw new IllegalArgumentException("Not a node of the cluster: " + node);
+
+        pinned.put(room, node);
+    }
+
+    /**
+     * @return the node that mixes {@code room}
+     */
+    public InetSocketAddress home(String room) {
+        InetSocketAddress home = pinned.get(room);
+
+        if (home != null) {
+            return home;
+        }
+
+        long best = Long.MIN_VALUE;
+
+        for (InetSocketAddress node : nodes) {
+            long score = score(room, node);
+
+            if (score > best) {
+                best = score;
+                home = node;
+            }
+        }
+
+        return home;
+    }
+
+    /**
+     * @return whether this node is the home of {@code room}
+     */
+    public boolean isLocal(String room) {
+        return home(room).equals(self);
+    }
+
+    private static long score(String room, InetSocketAddress node) {
+        return mix(mix(room.hashCode()) ^ (node.getHostString().hashCode() * 31L + node.getPort()));
+    }
+
+    /**
+     * The finalizer of MurmurHash3, so similar names and ports land on different nodes.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+
+    public InetSocketAddress getSelf() {
+        return self;
+    }
+
+    public List<InetSocketAddress> getNodes() {
+        return nodes;
+    }
+
+}
@@ -0,0 +1,128 @@
+package server;
+
+import client.ClientSocket;
+import misc.Frame;
+import misc.FrameCodec;
+import misc.Mixer;
+import misc.Transcoder;
+import misc.WuzlConfig;
+
+import java.util.List;
+
+/**
+ * Mixes the audio of all clients on the server, so every listener receives exactly one frame per tick
+ * instead of one frame per other speaker.
+ * Every source frame is decoded once, the total is built once, and each listener gets the total minus its own contribution,
+ * encoded with the negotiated codec. Frames the {@link SpeakerSelector} already decoded are not decoded again.
+ * Silent sources are neither decoded nor mixed, and a listener that would only hear silence gets no frame at all.
+ * Everyone who is not talking hears the same total, which is encoded once and shared by all of them who use the server's format.
+ * Listeners in a format of their own get it converted by their {@link Transcoder}, the sources already arrive in the server's format.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class ServerMixer {
+    private final Mixer mixer;
+    private final FrameCodec codec;
+    private final byte[] pcm;
+    private final byte[] totalPcm;
+    private final byte[] total;
+    private int[][] decoded;
+    private int[][] sources;  // The samples of every talking client in this tick, decoded here or by the speaker selector
+    private boolean[] talking;
+
+    public ServerMixer(WuzlConfig config) {
+        this.mixer = new Mixer(config.audioFormat(), config.bufferSize());
+        this.codec = config.newCodec();
+        this.pcm = new byte[config.bufferSize()];
+        this.totalPcm = new byte[config.bufferSize()];
+        this.total = new byte[config.encodedBufferSize()];
+        this.decoded = new int[0][];
+        this.sources = new int[0][];
+        this.talking = new boolean[0];
+    }
+
+
+    /**
+     * Sends one mixed frame to every client in {@code clients}, using the buffers they received last.
+     * Clients without a buffer in this tick are treated as silent.
+     *
+     * @param clients  the clients to mix, every one of them is a source and a listener
+     * @param speakers the selector that ranked the clients in this tick, its decoded samples are reused
+     * @param sender   sends the mixed frames
+     */
+    public void mixAndSend(List<ClientSocket> clients, SpeakerSelector speakers, MixSender sender) {
+        int count = clients.size();
+        int talkers = 0;
+        int totalLength = -1;
+        boolean totalEncoded = false;
+        ensureCapacity(count);
+        mixer.clear();
+
+        for (int i = 0; i < count; i++) {
+            Frame buffer = clients.get(i).getBuffer();
+            talking[i] = buffer != null;
+
+            if (talking[i]) {
+                sources[i] = speakers.samples(clients.get(i));
+
+                if (sources[i] == null) {
+                    int pcmLength = codec.decode(buffer.array(), buffer.length(), pcm);
+                    mixer.decode(pcm, pcmLength, decoded[i]);
+                    sources[i] = decoded[i];
+                }
+
+                mixer.add(sources[i]);
+                talkers++;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            ClientSocket listener = clients.get(i);
+            Transcoder transcoder = listener.getTranscoder();
+            int others = talking[i] ? talkers - 1 : talkers;
+
+            if (others == 0) {
+                transcoder.resetOutput();
+                sender.send(listener, null, true);
+            } else if (talking[i]) {
+                int pcmLength = mixer.mixWithout(sources[i], pcm);
+                sender.send(listener, transcoder.toClient(pcm, pcmLength), false);
+            } else {
+                if (totalLength == -1) {
+                    totalLength = mixer.mix(totalPcm);
+                }
+
+                if (!transcoder.isIdentity()) {
+                    sender.send(listener, transcoder.toClient(totalPcm, totalLength), false);
+                    continue;
+                }
+
+                if (!totalEncoded) {
+                    codec.encode(totalPcm, totalLength, total);
+                    totalEncoded = true;
+                }
+
+                sender.send(listener, total, true);
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (decoded.length >= count) {
+            return;
+        }
+
+        int[][] grown = new int[Math.max(count, decoded.length * 2)][];
+        System.arraycopy(decoded, 0, grown, 0, decoded.length);
+
+        for (int i = decoded.length; i < grown.length; i++) {
+            grown[i] = new int[mixer.sampleCount()];
+        }
+
+        decoded = grown;
+        sources = new int[grown.length][];
+        talking = new boolean[grown.length];
+    }
+
+}
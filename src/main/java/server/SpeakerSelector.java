@@ -0,0 +1,212 @@
+package server;
+
+import client.ClientSocket;
+import misc.Frame;
+import misc.FrameCodec;
+import misc.PcmSamples;
+import misc.WuzlConfig;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the loudest speakers of a room in every tick, the frames of everyone else are dropped before mixing or forwarding,
+ * so the work and bandwidth of a tick stay bounded however many people talk at once.
+ * <p>
+ * Speakers are ranked by their energy, smoothed over a few ticks.
+ * A speaker keeps its slot through short pauses, and only loses it to someone who is clearly louder,
+ * so the selection does not flap between speakers who are about as loud.
+ * Only clients that send audio are measured, the VAD of the clients keeps that to the people who actually talk.
+ * Their frames are decoded for that anyway, so the {@link ServerMixer} mixes the {@link #samples decoded samples} instead of decoding them again.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+public class SpeakerSelector {
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final double SMOOTHING = 0.5;   // Weight of the latest tick in the level
+    private static final double HYSTERESIS = 2.0;  // How much more energy it takes to replace a selected speaker, 3 dB
+    private static final int HOLD_TICKS = 3;       // Silent ticks a selected speaker keeps its slot for
+
+    private final FrameCodec codec;
+    private final AudioFormat format;
+    private final byte[] pcm;
+    private final int sampleCount;
+    private final double fullScale;
+    private final Map<ClientSocket, Speaker> speakers = new IdentityHashMap<>();
+    private List<ClientSocket> members = List.of();
+    private boolean ranked;
+    private volatile int maxSpeakers;
+
+    /**
+     * @param maxSpeakers how many speakers are heard at once, {@link #UNLIMITED} to hear everyone
+     */
+    public SpeakerSelector(WuzlConfig config, int maxSpeakers) {
+        this.codec = config.newCodec();
+        this.format = config.audioFormat();
+        this.pcm = new byte[config.bufferSize()];
+        this.sampleCount = PcmSamples.sampleCount(format, config.bufferSize());
+        this.fullScale = (double) PcmSamples.maxValue(format) * PcmSamples.maxValue(format);
+        this.maxSpeakers = maxSpeakers;
+    }
+
+
+    /**
+     * Decides who is heard in this tick, and {@link ClientSocket#discardBuffer() discards} the frames of everyone else.
+     *
+     * @param clients a snapshot of the clients of the room, after their buffers were polled, a new list whenever someone joined or left
+     * @return the number of frames discarded
+     */
+    public int select(List<ClientSocket> clients) {
+        if (clients != members) {
+            speakers.keySet().removeIf(client -> !clients.contains(client));  // Only when someone joined or left
+            members = clients;
+        }
+
+        int max = maxSpeakers;
+        ranked = max != UNLIMITED;
+
+        if (!ranked) {
+            return 0;
+        }
+
+        int selected = 0;
+
+        for (ClientSocket client : clients) {
+            Speaker speaker = speakers.computeIfAbsent(client, c -> new Speaker(sampleCount));
+            Frame frame = client.getBuffer();
+            speaker.talking = frame != null;
+            speaker.level = (1 - SMOOTHING) * speaker.level + (speaker.talking ? SMOOTHING * level(frame, speaker.samples) : 0);
+            speaker.silentTicks = speaker.talking ? 0 : speaker.silentTicks + 1;
+
+            if (speaker.selected && speaker.silentTicks > HOLD_TICKS) {
+                speaker.selected = false;
+            }
+
+            if (speaker.selected) {
+                selected++;
+            }
+        }
+
+        while (true) {
+            Speaker loudest = loudestWaiting();
+
+            if (loudest == null) {
+                break;
+            }
+
+            if (selected < max) {
+                loudest.selected = true;
+                selected++;
+                continue;
+            }
+
+            Speaker quietest = quietestSelected();
+
+            if (quietest == null || loudest.level <= HYSTERESIS * quietest.level) {
+                break;
+            }
+
+            quietest.selected = false;
+            loudest.selected = true;
+        }
+
+        int discarded = 0;
+
+        for (ClientSocket client : clients) {
+            Speaker speaker = speakers.get(client);
+
+            if (speaker.talking && !speaker.selected) {
+                client.discardBuffer();
+                discarded++;
+            }
+        }
+
+        return discarded;
+    }
+
+    /**
+     * @return the samples of the client's frame in this tick, as decoded by {@link #select}, or {@code null} if it was not decoded
+     */
+    public int[] samples(ClientSocket client) {
+        if (!ranked) {
+            return null;
+        }
+
+        Speaker speaker = speakers.get(client);
+        return speaker != null && speaker.talking ? speaker.samples : null;
+    }
+
+    /**
+     * @return the loudest speaker who talks but is not heard, or {@code null} if everyone who talks is heard
+     */
+    private Speaker loudestWaiting() {
+        Speaker loudest = null;
+
+        for (Speaker speaker : speakers.values()) {
+            if (speaker.talking && !speaker.selected && (loudest == null || speaker.level > loudest.level)) {
+                loudest = speaker;
+            }
+        }
+
+        return loudest;
+    }
+
+    private Speaker quietestSelected() {
+        Speaker quietest = null;
+
+        for (Speaker speaker : speakers.values()) {
+            if (speaker.selected && (quietest == null || speaker.level < quietest.level)) {
+                quietest = speaker;
+            }
+        }
+
+        return quietest;
+    }
+
+    /**
+     * @param samples where the frame is decoded to, zero-padded like {@link misc.Mixer#decode}
+     * @return the mean energy of the frame, relative to a full scale signal
+     */
+    private double level(Frame frame, int[] samples) {
+        int count = PcmSamples.decode(pcm, codec.decode(frame.array(), frame.length(), pcm), samples, format);
+        Arrays.fill(samples, count, samples.length, 0);
+        long sum = 0;
+
+        for (int i = 0; i < count; i++) {
+            sum += (long) samples[i] * samples[i];
+        }
+
+        return count == 0 ? 0 : sum / (count * fullScale);
+    }
+
+
+    public int getMaxSpeakers() {
+        return maxSpeakers;
+    }
+
+    /**
+     * @param maxSpeakers how many speakers are heard at once, {@link #UNLIMITED} to hear everyone
+     */
+    public void setMaxSpeakers(int maxSpeakers) {
+        this.maxSpeakers = maxSpeakers;
+    }
+
+
+    private static class Speaker {
+        private final int[] samples;
+        private double level;
+        private int silentTicks;
+        private boolean talking;
+        private boolean selected;
+
+        private Speaker(int sampleCount) {
+            this.samples = new int[sampleCount];
+        }
+    }
+
+}
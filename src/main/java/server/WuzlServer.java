@@ -1,31 +1,82 @@
 package server;
 
 import client.ClientSocket;
+import client.OverflowPolicy;
+import misc.AudioCodec;
+import misc.Handshake;
+import misc.MediaPacket;
+import misc.Metrics;
 import misc.WuzlConfig;
 
-import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author : Emilio Zottel (4AHIF)
  * @since : 07.11.2022, Mo.
  **/
 public class WuzlServer implements AutoCloseable {
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    private static final int HANDSHAKE_BUFFER_SIZE = 64;  // The client waits for the welcome before sending frames, so nothing is read ahead
+    public static final int METRICS_PORT = 27080;
+
+    private final ServerSocketChannel serverChannel;
     private final ServerSocket serverSocket;
-    private final List<ClientSocket> clientList;
     private final WuzlConfig config;
-    private final AtomicBoolean clientConnecting = new AtomicBoolean();
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService handshakes;
+    private final DatagramChannel mediaChannel;
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<Integer, ClientSocket> clientsById = new ConcurrentHashMap<>();
+    private final IdPool clientIds = new IdPool(MediaPacket.SERVER_ID + 1);
+    private final SecureRandom mediaTokens = new SecureRandom();
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private volatile int maxOverflows = ClientSocket.DEFAULT_MAX_OVERFLOWS;
+    private final Metrics metrics = new Metrics();
+    private final LongAdder connections = metrics.counter("server.connections");
+    private final LongAdder rejections = metrics.counter("server.rejections");
+    private final LongAdder rejectedDatagrams = metrics.counter("server.rejected_datagrams");
+    private volatile Recorder recorder;
+    private volatile RoutingTable routes;
+    private volatile int maxSpeakers = SpeakerSelector.UNLIMITED;
 
     public WuzlServer(WuzlConfig config) throws IOException {
         this.config = config;
-        this.serverSocket = new ServerSocket(config.communicationPort());
-        this.clientList = new ArrayList<>();
+        this.serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress(config.communicationPort()));
+        this.serverSocket = serverChannel.socket();
+        // Every room ticks on this scheduler, so rooms spread across all cores
+        this.ticker = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+        this.handshakes = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "handshake");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.mediaChannel = config.datagramMedia() ? DatagramChannel.open().bind(new InetSocketAddress(config.mediaPort())) : null;
+        metrics.gauge("server.clients", clientsById::size);
+        metrics.gauge("server.rooms", rooms::size);
         System.out.println("Server started: " + serverSocket);
     }
 
@@ -34,8 +85,36 @@ public class WuzlServer implements AutoCloseable {
     }
 
 
+    /**
+     * Usage: {@code WuzlServer [recording directory | -] [routes file | -] [host:port of this node] [metrics host]}
+     *
+     * @param args optionally the directory to record all rooms into, and the {@link RoutingTable} of a cluster
+     *             with the address of this node as the routes file lists it, which is also the port the node listens on.
+     *             Metrics are served on {@link #METRICS_PORT} plus the offset of the port, so several nodes can run on one machine,
+     *             and only to this machine unless another host to bind to is given, e.g. {@code 0.0.0.0}
+     */
     public static void main(String[] args) {
-        try (var server = new WuzlServer()) {
+        WuzlConfig defaults = WuzlConfig.defaultSettings();
+        InetSocketAddress self = args.length > 2 ? RoutingTable.parseAddress(args[2]) : new InetSocketAddress("localhost", defaults.communicationPort());
+        int port = self.getPort();
+        var config = new WuzlConfig(port, defaults.bufferSize(), defaults.serializableAudioFormat(), defaults.serverMixing(), defaults.mediaPort(), defaults.codec());
+        int metricsPort = METRICS_PORT + port - defaults.communicationPort();
+        InetSocketAddress metricsAddress = args.length > 3 ? new InetSocketAddress(args[3], metricsPort) : new InetSocketAddress(InetAddress.getLoopbackAddress(), metricsPort);
+
+        try (var server = new WuzlServer(config)) {
+            if (args.length > 0 && !args[0].equals("-")) {
+                server.startRecording(Path.of(args[0]));
+                System.out.println("Recording into " + args[0]);
+            }
+
+            if (args.length > 1 && !args[1].equals("-")) {
+                server.setRoutes(RoutingTable.load(Path.of(args[1]), self));
+                System.out.println("Cluster node " + self + " of " + server.getRoutes().getNodes());
+            }
+
+            server.getMetrics().registerMBean("server-" + port);
+            server.getMetrics().serveHttp(metricsAddress);
+            System.out.println("Metrics: http://" + metricsAddress.getHostString() + ":" + metricsPort + "/metrics");
             server.start();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -45,125 +124,409 @@ public class WuzlServer implements AutoCloseable {
     }
 
 
-    private void sendObject(Object o, Socket target) throws IOException {
-        new ObjectOutputStream(target.getOutputStream()).writeObject(o);
-    }
-
+    /**
+     * Runs until the server is closed.
+     */
     public void start() throws InterruptedException {
         Thread clientAcceptor = new Thread(this::acceptClients);
         clientAcceptor.setDaemon(true);
         clientAcceptor.start();
 
-        // maybe start a broadcast loop thread for every single client (in case there are latency issues)
-        while (true) {
-            waitForNewClientToFinishConnecting();
-            broadcastEach();
+        if (mediaChannel != null) {
+            Thread mediaReceiver = new Thread(this::receiveDatagrams);
+            mediaReceiver.setDaemon(true);
+            mediaReceiver.start();
+        }
+
+        ticker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    public void acceptClients() {
+        while (!serverSocket.isClosed()) {
+            acceptClient();
         }
     }
 
     /**
-     * Could also synchronize on "this", but then we would have to notify every thread waiting on "this",
-     * which is bad because then we would also notify the thread that is waiting for a new client to connect.
-     * That isn't much of a problem, but then there will be more than 1 "Client connected" message,
-     * which is not cool, so we just use a separate lock object.
+     * Only accepts the connection, the handshake runs on a thread of its own,
+     * so a client that takes its time only delays itself and not everyone connecting after it.
      */
-    private void waitForNewClientToFinishConnecting() throws InterruptedException {
-        while (clientConnecting.get()) {
-            synchronized (clientConnecting) {
-                clientConnecting.wait();
+    public void acceptClient() {
+        try {
+            SocketChannel channel = serverChannel.accept();  // Waiting for a client
+
+            try {
+                handshakes.execute(() -> admit(channel));
+            } catch (RejectedExecutionException e) {
+                channel.close();  // The server was closed just now
             }
+        } catch (ClosedChannelException e) {
+            // The server was closed while waiting for a client
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
-    public void acceptClients() {
-        while (true) {
-            acceptClient();
+    /**
+     * Rooms keep ticking while a client connects, the client only joins its room once the handshake is done.
+     */
+    private void admit(SocketChannel channel) {
+        Socket client = channel.socket();
+        int id = clientIds.acquire();
+
+        try {
+            long mediaToken = mediaTokens.nextLong();
+            Handshake.Hello hello = shakeHands(client, id, mediaToken);
+
+            if (hello == null) {
+                rejections.increment();
+                clientIds.release(id);
+                client.close();
+                return;
+            }
+
+            connections.increment();
+            ClientSocket clientSocket = new ClientSocket(channel, id, configFor(hello), config, datagramMedia(hello), mediaToken, metrics);
+            clientSocket.setOverflowPolicy(overflowPolicy, maxOverflows);
+            clientsById.put(id, clientSocket);
+            clientSocket.start();
+            Room room = join(hello.room(), clientSocket, hello.isPeer());
+            System.out.println((hello.isPeer() ? "+Peer linked room \"" : "+Client connected to room \"") + room.getName() + "\": " + client);
+        } catch (IOException | RuntimeException e) {
+            // A client must not take down its handshake thread, whatever it sent
+            System.err.println("Could not admit client " + client + ": " + e);
+            clientsById.remove(id);
+            clientIds.release(id);
+
+            try {
+                client.close();
+            } catch (IOException ignored) {
+                // The connection is gone anyway
+            }
         }
     }
 
-    public void acceptClient() {
+    /**
+     * A client that does not answer within {@link #HANDSHAKE_TIMEOUT_MILLIS} is dropped, so it does not hold on to its thread.
+     *
+     * @param id the id to welcome the client with, or {@link IdPool#NONE} if the server is full
+     * @return what the client said, or {@code null} if it was rejected
+     */
+    private Handshake.Hello shakeHands(Socket client, int id, long mediaToken) throws IOException {
+        client.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        var in = new DataInputStream(new BufferedInputStream(client.getInputStream(), HANDSHAKE_BUFFER_SIZE));
+        var out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream(), HANDSHAKE_BUFFER_SIZE));
+
         try {
-            Socket client = serverSocket.accept();  // Waiting for a client
-            clientConnecting.set(true);
-            sendObject(config, client);
-            System.out.println("+Client connected: " + client);
-
-            // Synchronize AFTER waiting for the client,
-            // so the lock on "this" is not blocked while waiting for a client to connect
-            synchronized (this) {
-                clientList.add(new ClientSocket(client, config.bufferSize()));
-                notifyAll();
+            Handshake.Hello hello = Handshake.readHello(in);
+
+            if (hello == null) {
+                Handshake.writeRejection(out, Handshake.UNSUPPORTED_VERSION);
+                return null;
             }
 
-            synchronized (clientConnecting) {
-                clientConnecting.set(false);
-                clientConnecting.notifyAll();
+            if (id == IdPool.NONE) {
+                Handshake.writeRejection(out, Handshake.SERVER_FULL);
+                return null;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+
+            if (hello.format() != null && !Handshake.isSupported(hello.format())) {
+                Handshake.writeRejection(out, Handshake.UNSUPPORTED_FORMAT);
+                return null;
+            }
+
+            WuzlConfig clientConfig = configFor(hello);
+
+            if (clientConfig == null) {
+                Handshake.writeRejection(out, Handshake.UNSUPPORTED_CODEC);
+                return null;
+            }
+
+            if (hello.isPeer() && !isHome(hello.room())) {
+                Handshake.writeRejection(out, Handshake.NOT_HOME);
+                return null;
+            }
+
+            Handshake.writeWelcome(out, id, clientConfig, datagramMedia(hello), mediaToken);
+            return hello;
+        } catch (SocketTimeoutException e) {
+            System.err.println("Handshake timed out: " + client);
+            return null;
+        } finally {
+            out.flush();
+            client.setSoTimeout(0);
+        }
+    }
+
+    /**
+     * Only a mixing server can convert, when forwarding every client gets the raw frames of the others, so they have to share one format and codec.
+     * A mixing server welcomes the client with the best codec they have in common, see {@link WuzlConfig#negotiateCodec}.
+     *
+     * @return the config the client is welcomed with, in the format it announced if the server mixes,
+     * or {@code null} if the client supports no codec the server can use for it
+     */
+    private WuzlConfig configFor(Handshake.Hello hello) {
+        if (!config.serverMixing()) {
+            return hello.codecs().contains(config.codec()) ? config : null;
+        }
+
+        WuzlConfig clientConfig = hello.format() == null ? config : config.withAudioFormat(hello.format());
+        return clientConfig.negotiateCodec(hello.codecs()).map(clientConfig::withCodec).orElse(null);
+    }
+
+    /**
+     * Clients that can not do UDP still get their audio over TCP.
+     */
+    private boolean datagramMedia(Handshake.Hello hello) {
+        return config.datagramMedia() && hello.supportsDatagrams();
+    }
+
+    /**
+     * Only the home node accepts links, so audio never crosses more than one hop, even if the routes of two nodes disagree.
+     * A link needs the room to be mixed, so it carries a single frame per tick.
+     */
+    private boolean isHome(String room) {
+        RoutingTable routes = this.routes;
+        return config.serverMixing() && (routes == null || routes.isLocal(room));
+    }
+
+    /**
+     * Opens the room if nobody is in it yet, linked to its home node if that is another one.
+     *
+     * @param peer whether the client is another node, which always joins the room here
+     */
+    private Room join(String name, ClientSocket client, boolean peer) {
+        while (true) {
+            Room room = rooms.computeIfAbsent(name, n -> open(n, peer));
+
+            if (room.join(client, ticker)) {
+                return room;
+            }
+
+            // Everyone left just now, the room is removed once it finished closing, then it is opened again
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Runs while the rooms are locked, so connecting to the home node is left to a thread of its own.
+     */
+    private Room open(String name, boolean peer) {
+        Room room = new Room(name, config, mediaChannel, this);
+        RoutingTable routes = this.routes;
+
+        if (peer || routes == null || routes.isLocal(name) || !config.serverMixing()) {
+            return room;
+        }
+
+        InetSocketAddress home = routes.home(name);
+
+        try {
+            handshakes.execute(() -> link(room, home));
+        } catch (RejectedExecutionException e) {
+            // The server was closed just now
         }
+
+        return room;
     }
 
-    private synchronized void waitUntilClientCountExceedsN(int n) {
+    /**
+     * Connects to the home node of the room like a client would, announcing this server's format,
+     * so the home node converts if the nodes use different formats.
+     * A room that can not be linked is served here alone, its clients at least hear each other.
+     */
+    private void link(Room room, InetSocketAddress home) {
+        int id = clientIds.acquire();
+
+        if (id == IdPool.NONE) {
+            System.err.println("Could not link room \"" + room.getName() + "\", no client id left, serving it here alone");
+            return;
+        }
+
+        SocketChannel channel = null;
+
         try {
-            if (clientList.size() <= n) {
-                while (clientList.size() <= n) {
-                    System.out.printf("Waiting for more clients... (%d/%d)%n", clientList.size(), n + 1);
-                    wait();
-                }
+            channel = SocketChannel.open();
+            channel.socket().connect(home, HANDSHAKE_TIMEOUT_MILLIS);
+            channel.socket().setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            var out = new DataOutputStream(new BufferedOutputStream(channel.socket().getOutputStream(), HANDSHAKE_BUFFER_SIZE));
+            Handshake.writeHello(out, EnumSet.allOf(AudioCodec.class), Handshake.TCP | Handshake.PEER, room.getName(), config.serializableAudioFormat());
+            out.flush();
+
+            // Unbuffered, so nothing after the welcome is read ahead of the link's own stream
+            Handshake.Welcome welcome = Handshake.readWelcome(new DataInputStream(channel.socket().getInputStream()), home.getPort());
+            channel.socket().setSoTimeout(0);
 
-                System.out.printf("Just got notified that we have enough clients! (%d/%d)%n", clientList.size(), n + 1);
+            ClientSocket uplink = new ClientSocket(channel, id, welcome.config(), config, metrics);
+            uplink.start();
+
+            if (!room.attachUplink(uplink)) {
+                uplink.close();  // Everyone left while linking
+                clientIds.release(id);
+                return;
+            }
+
+            System.out.println("+Linked room \"" + room.getName() + "\" to its home node " + home);
+        } catch (IOException e) {
+            System.err.println("Could not link room \"" + room.getName() + "\" to " + home + ", serving it here alone: " + e.getMessage());
+            clientIds.release(id);
+
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // The connection is gone anyway
+                }
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
         }
     }
 
-    // TODO works fine for 2 clients, but noisy for 3+ clients
-    private synchronized void broadcastEach() {
-        // Probably useless
-        //Arrays.fill(buffer, (byte) 0);
+    /**
+     * Records every room opened from now on into a directory of its own, see {@link Recording}.
+     */
+    public void startRecording(Path directory) {
+        stopRecording();
+        recorder = new Recorder(directory, config, metrics);
+    }
+
+    /**
+     * Rooms that are recording stop at once, frames already queued are still written.
+     */
+    public void stopRecording() {
+        Recorder stopped = recorder;
+        recorder = null;
+
+        if (stopped != null) {
+            stopped.close();
+        }
+    }
+
+    void clientLeft(ClientSocket client) {
+        clientsById.remove(client.getId());
+        clientIds.release(client.getId());
+    }
+
+    void roomClosed(Room room) {
+        rooms.remove(room.getName(), room);
+    }
+
+    /**
+     * Dispatches the datagrams of all clients to their jitter buffers, which drop the ones that arrive too late.
+     * Datagrams that do not prove to come from the client they name are dropped, see {@link ClientSocket#receiveDatagram}.
+     */
+    private void receiveDatagrams() {
+        ByteBuffer packet = ByteBuffer.allocate(MediaPacket.MAX_SIZE);
+
+        while (true) {
+            try {
+                packet.clear();
+                SocketAddress sender = mediaChannel.receive(packet);
+                packet.flip();
 
-        waitUntilClientCountExceedsN(1);
-        clientList.removeIf(client -> client.receiveBuffer(true) == Integer.MIN_VALUE);
-        Iterator<ClientSocket> iterator = clientList.iterator();
+                if (packet.limit() < MediaPacket.HEADER_SIZE)
+                    continue;
 
-        while (iterator.hasNext()) {
-            ClientSocket source = iterator.next();
+                ClientSocket client = clientsById.get(MediaPacket.sourceId(packet));
+                long sequence = Integer.toUnsignedLong(MediaPacket.sequence(packet));
 
-            if (source.isActive()) {
-                broadcastToEveryoneElseThan(source, new byte[]{1});  // 1 = Do not separate
-                broadcastToEveryoneElseThan(source, source.getBuffer());
-            } else {
-                iterator.remove();
-                source.printDisconnectMessage();  // Logging the disconnect message for "broadcastToEveryoneElseThan"
+                if (client == null || !client.receiveDatagram((InetSocketAddress) sender, MediaPacket.token(packet), sequence, packet.array(), MediaPacket.HEADER_SIZE, MediaPacket.payloadLength(packet))) {
+                    rejectedDatagrams.increment();
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                e.printStackTrace();
             }
         }
+    }
+
+
+    /**
+     * @return the TCP port the server accepts clients on, useful if it was started on port 0
+     */
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the clients currently connected, in any room
+     */
+    public Collection<ClientSocket> getClients() {
+        return List.copyOf(clientsById.values());
+    }
+
+    /**
+     * Applies to clients that connect afterwards.
+     *
+     * @param maxOverflows how many ticks in a row may overflow before {@link OverflowPolicy#DISCONNECT} disconnects a client
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy, int maxOverflows) {
+        this.overflowPolicy = overflowPolicy;
+        this.maxOverflows = maxOverflows;
+    }
+
+    public int getMaxSpeakers() {
+        return maxSpeakers;
+    }
 
-        broadcast(new byte[]{0});  // 0 = (null)-Separate
+    /**
+     * Applies to rooms that are opened afterwards, see {@link Room#setMaxSpeakers} for rooms that are already open.
+     *
+     * @param maxSpeakers how many of the loudest speakers of a room are heard at once, {@link SpeakerSelector#UNLIMITED} to hear everyone
+     */
+    public void setMaxSpeakers(int maxSpeakers) {
+        this.maxSpeakers = maxSpeakers;
     }
 
     /**
-     * @param buffer the buffer to broadcast
+     * @return the metrics of the server, its rooms and its clients
      */
-    private void broadcast(byte[] buffer) {
-        clientList.removeIf(client -> !client.isActive() || !client.sendBuffer(buffer, true));
+    public Metrics getMetrics() {
+        return metrics;
     }
 
     /**
-     * @param source The client that should not receive the message (the client that sent the message)
-     * @param buffer the buffer to broadcast
+     * @return the recorder new rooms are recorded with, or {@code null} if the server is not recording
      */
-    private void broadcastToEveryoneElseThan(ClientSocket source, byte[] buffer) {
-        clientList.stream()
-                .filter(client -> client != source && !client.sendBuffer(buffer, false))
-                .forEach(client -> client.setActive(false));
+    public Recorder getRecorder() {
+        return recorder;
+    }
+
+    /**
+     * @return the routes of the cluster this server is a node of, or {@code null} if it serves every room itself
+     */
+    public RoutingTable getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Applies to rooms that are opened afterwards.
+     *
+     * @param routes the routes of the cluster, or {@code null} to serve every room here
+     */
+    public void setRoutes(RoutingTable routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * @return the rooms that currently have clients in them
+     */
+    public Map<String, Room> getRooms() {
+        return Map.copyOf(rooms);
     }
 
 
     @Override
     public void close() throws Exception {
+        ticker.shutdownNow();
         serverSocket.close();
+        handshakes.shutdownNow();
+        rooms.values().forEach(Room::close);  // Also closes the links to other nodes
+        stopRecording();
+
+        if (mediaChannel != null) {
+            mediaChannel.close();
+        }
     }
 
 }
@@ -0,0 +1,142 @@
+package misc;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+class AudioCodecTest {
+    private static final AudioFormat MONO = new AudioFormat(44100, 16, 1, true, true);
+    private static final AudioFormat STEREO = new AudioFormat(48000, 16, 2, true, false);
+    private static final int FRAME_SIZE = 4096;
+
+
+    @Test
+    void pcmIsLossless() {
+        byte[] pcm = sine(MONO, 440, 0.5, 0);
+        assertArrayEquals(pcm, roundTrip(AudioCodec.PCM, MONO, pcm));
+    }
+
+    @Test
+    void g711KeepsTheSignalWellAboveItsQuantizationNoise() {
+        for (AudioCodec codec : EnumSet.of(AudioCodec.ULAW, AudioCodec.ALAW)) {
+            for (double amplitude : new double[]{0.9, 0.1, 0.01}) {
+                byte[] pcm = sine(MONO, 440, amplitude, 0);
+                double snr = snr(MONO, pcm, roundTrip(codec, MONO, pcm));
+                assertTrue(snr > 30, codec + " at " + amplitude + " of full scale: " + snr + " dB");
+            }
+        }
+    }
+
+    @Test
+    void adpcmKeepsTheSignalAboveItsQuantizationNoise() {
+        for (AudioFormat format : new AudioFormat[]{MONO, STEREO}) {
+            byte[] pcm = sine(format, 440, 0.5, 0);
+            double snr = snr(format, pcm, roundTrip(AudioCodec.IMA_ADPCM, format, pcm));
+            assertTrue(snr > 20, format + ": " + snr + " dB");
+        }
+    }
+
+    @Test
+    void encodedFramesHaveTheAdvertisedSize() {
+        for (AudioCodec codec : AudioCodec.values()) {
+            FrameCodec instance = codec.newCodec(STEREO, FRAME_SIZE);
+            byte[] encoded = new byte[codec.encodedSize(STEREO, FRAME_SIZE)];
+            assertEquals(encoded.length, instance.encode(sine(STEREO, 440, 0.5, 0), FRAME_SIZE, encoded), codec.name());
+        }
+    }
+
+    /**
+     * A frame decodes the same whether the frames before it were decoded or lost.
+     */
+    @Test
+    void adpcmFramesAreSelfContained() {
+        FrameCodec encoder = AudioCodec.IMA_ADPCM.newCodec(MONO, FRAME_SIZE);
+        int encodedSize = AudioCodec.IMA_ADPCM.encodedSize(MONO, FRAME_SIZE);
+        byte[] first = new byte[encodedSize];
+        byte[] second = new byte[encodedSize];
+        encoder.encode(sine(MONO, 440, 0.5, 0), FRAME_SIZE, first);
+        encoder.encode(sine(MONO, 440, 0.5, FRAME_SIZE / 2), FRAME_SIZE, second);
+
+        FrameCodec inSequence = AudioCodec.IMA_ADPCM.newCodec(MONO, FRAME_SIZE);
+        byte[] afterFirst = new byte[FRAME_SIZE];
+        inSequence.decode(first, encodedSize, afterFirst);
+        inSequence.decode(second, encodedSize, afterFirst);
+
+        byte[] alone = new byte[FRAME_SIZE];
+        AudioCodec.IMA_ADPCM.newCodec(MONO, FRAME_SIZE).decode(second, encodedSize, alone);
+
+        assertArrayEquals(afterFirst, alone);
+    }
+
+    @Test
+    void negotiatesTheBestCodecBothSidesSupport() {
+        WuzlConfig server = new WuzlConfig(0, FRAME_SIZE, new SerializableAudioFormat(44100, 16, 1, true, true), true, 0, AudioCodec.ULAW);
+
+        assertEquals(Optional.of(AudioCodec.ULAW), server.negotiateCodec(EnumSet.allOf(AudioCodec.class)));
+        assertEquals(Optional.of(AudioCodec.ALAW), server.negotiateCodec(EnumSet.of(AudioCodec.PCM, AudioCodec.ALAW)));
+        assertEquals(Optional.of(AudioCodec.IMA_ADPCM), server.negotiateCodec(EnumSet.of(AudioCodec.IMA_ADPCM, AudioCodec.PCM)));
+        assertEquals(Optional.of(AudioCodec.PCM), server.negotiateCodec(EnumSet.of(AudioCodec.PCM)));
+        assertEquals(Optional.empty(), server.negotiateCodec(EnumSet.noneOf(AudioCodec.class)));
+    }
+
+    @Test
+    void fallsBackToPcmForFormatsTheCodecDoesNotSupport() {
+        WuzlConfig eightBit = new WuzlConfig(0, FRAME_SIZE, new SerializableAudioFormat(8000, 8, 1, true, true), true, 0, AudioCodec.PCM);
+        assertEquals(Optional.of(AudioCodec.PCM), eightBit.negotiateCodec(EnumSet.allOf(AudioCodec.class)));
+    }
+
+    private static byte[] roundTrip(AudioCodec codec, AudioFormat format, byte[] pcm) {
+        byte[] encoded = new byte[codec.encodedSize(format, pcm.length)];
+        byte[] decoded = new byte[pcm.length];
+        int length = codec.newCodec(format, pcm.length).encode(pcm, pcm.length, encoded);
+        assertEquals(pcm.length, codec.newCodec(format, pcm.length).decode(encoded, length, decoded));
+        return decoded;
+    }
+
+    /**
+     * @param offset the number of sample frames before this frame, so consecutive frames continue the wave
+     */
+    private static byte[] sine(AudioFormat format, double frequency, double amplitude, int offset) {
+        int channels = format.getChannels();
+        int[] samples = new int[PcmSamples.sampleCount(format, FRAME_SIZE)];
+
+        for (int i = 0; i < samples.length; i++) {
+            double t = (offset + i / channels) / (double) format.getSampleRate();
+            samples[i] = (int) Math.round(amplitude * PcmSamples.maxValue(format) * Math.sin(2 * Math.PI * frequency * t));
+        }
+
+        byte[] pcm = new byte[FRAME_SIZE];
+        PcmSamples.encode(samples, samples.length, pcm, format);
+        return pcm;
+    }
+
+    /**
+     * @return the signal to noise ratio in dB
+     */
+    private static double snr(AudioFormat format, byte[] original, byte[] decoded) {
+        int[] x = new int[PcmSamples.sampleCount(format, original.length)];
+        int[] y = new int[x.length];
+        PcmSamples.decode(original, original.length, x, format);
+        PcmSamples.decode(decoded, decoded.length, y, format);
+        double signal = Arrays.stream(x).mapToDouble(v -> (double) v * v).sum();
+        double noise = 0;
+
+        for (int i = 0; i < x.length; i++) {
+            noise += (double) (x[i] - y[i]) * (x[i] - y[i]);
+        }
+
+        return 10 * Math.log10(signal / Math.max(noise, 1));
+    }
+
+}
@@ -0,0 +1,132 @@
+package misc;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+class FormatConverterTest {
+    private static final WuzlConfig SERVER = new WuzlConfig(0, 7056, new SerializableAudioFormat(44100, 16, 2, true, false), true);  // 40 ms
+    private static final int FRAMES = 8;
+
+
+    @Test
+    void keepsTheDurationOfAFrameInAnotherFormat() {
+        WuzlConfig client = SERVER.withAudioFormat(new SerializableAudioFormat(48000, 16, 1, true, true));
+
+        assertEquals(1920 * 2, client.bufferSize());
+        assertEquals(SERVER.frameDurationNanos(), client.frameDurationNanos());
+    }
+
+    @Test
+    void writesAFullTargetFrame() {
+        for (float sampleRate : new float[]{8000, 44100, 48000, 96000}) {
+            WuzlConfig client = SERVER.withAudioFormat(new SerializableAudioFormat(sampleRate, 16, 2, true, false));
+            FormatConverter converter = new FormatConverter(SERVER.audioFormat(), SERVER.bufferSize(), client.audioFormat(), client.bufferSize());
+            byte[] target = new byte[client.bufferSize()];
+
+            assertEquals(client.bufferSize(), converter.convert(new byte[SERVER.bufferSize()], SERVER.bufferSize(), target), sampleRate + " Hz");
+        }
+    }
+
+    @Test
+    void passesDirectCurrentAtUnityGain() {
+        for (float sampleRate : new float[]{8000, 22050, 48000, 96000}) {
+            int[] out = convert(new SerializableAudioFormat(sampleRate, 16, 2, true, false), i -> 10000);
+
+            for (int sample : out) {
+                assertEquals(10000, sample, 100, sampleRate + " Hz");
+            }
+        }
+    }
+
+    @Test
+    void keepsTheAmplitudeOfATone() {
+        for (float sampleRate : new float[]{8000, 48000, 96000}) {
+            int[] out = convert(new SerializableAudioFormat(sampleRate, 16, 1, true, true), i -> sine(440, i, 44100));
+            double peak = 0;
+
+            for (int sample : out) {
+                peak = Math.max(peak, Math.abs(sample));
+            }
+
+            assertEquals(10000, peak, 200, sampleRate + " Hz");
+        }
+    }
+
+    @Test
+    void averagesStereoDownToMono() {
+        AudioFormat stereo = new AudioFormat(8000, 16, 2, true, false);
+        AudioFormat mono = new AudioFormat(8000, 16, 1, true, false);
+        FormatConverter converter = new FormatConverter(stereo, 16, mono, 8);
+        byte[] target = new byte[8];
+
+        converter.convert(pcm(stereo, 1000, 3000, -2000, 0, 10, 20, 0, 0), 16, target);
+
+        assertArrayEquals(new int[]{2000, -1000, 15, 0}, samples(mono, target));
+    }
+
+    @Test
+    void duplicatesMonoAndWidensTheSamples() {
+        AudioFormat mono = new AudioFormat(8000, 8, 1, true, true);
+        AudioFormat stereo = new AudioFormat(8000, 16, 2, true, true);
+        FormatConverter converter = new FormatConverter(mono, 2, stereo, 8);
+        byte[] target = new byte[8];
+
+        converter.convert(pcm(mono, 64, -128), 2, target);
+
+        assertArrayEquals(new int[]{16384, 16384, -32768, -32768}, samples(stereo, target));
+    }
+
+    /**
+     * Converts {@link #FRAMES} frames of the {@link #SERVER} to a client in format {@code to}.
+     *
+     * @param signal the sample at every index, in every channel
+     * @return the samples of the last frame, when the filter has long settled
+     */
+    private static int[] convert(SerializableAudioFormat to, IntUnaryOperator signal) {
+        AudioFormat from = SERVER.audioFormat();
+        WuzlConfig client = SERVER.withAudioFormat(to);
+        FormatConverter converter = new FormatConverter(from, SERVER.bufferSize(), client.audioFormat(), client.bufferSize());
+        int channels = from.getChannels();
+        int frames = SERVER.bufferSize() / from.getFrameSize();
+        int[] samples = new int[frames * channels];
+        byte[] source = new byte[SERVER.bufferSize()];
+        byte[] target = new byte[client.bufferSize()];
+
+        for (int n = 0; n < FRAMES; n++) {
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = signal.applyAsInt(n * frames + i / channels);
+            }
+
+            PcmSamples.encode(samples, samples.length, source, from);
+            converter.convert(source, source.length, target);
+        }
+
+        return samples(client.audioFormat(), target);
+    }
+
+    private static int sine(double frequency, int index, float sampleRate) {
+        return (int) Math.round(10000 * Math.sin(2 * Math.PI * frequency * index / sampleRate));
+    }
+
+    private static byte[] pcm(AudioFormat format, int... samples) {
+        byte[] pcm = new byte[samples.length * PcmSamples.bytesPerSample(format)];
+        PcmSamples.encode(samples, samples.length, pcm, format);
+        return pcm;
+    }
+
+    private static int[] samples(AudioFormat format, byte[] pcm) {
+        int[] samples = new int[PcmSamples.sampleCount(format, pcm.length)];
+        PcmSamples.decode(pcm, pcm.length, samples, format);
+        return samples;
+    }
+
+}
@@ -0,0 +1,147 @@
+package misc;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+class HandshakeTest {
+    private static final SerializableAudioFormat FORMAT = new SerializableAudioFormat(48000, 16, 2, true, false);
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+
+    @Test
+    void readsTheHelloThatWasWritten() throws IOException {
+        Set<AudioCodec> codecs = EnumSet.of(AudioCodec.PCM, AudioCodec.IMA_ADPCM);
+        Handshake.writeHello(out, codecs, Handshake.TCP | Handshake.UDP, "kitchen", FORMAT);
+
+        Handshake.Hello hello = Handshake.readHello(in());
+
+        assertNotNull(hello);
+        assertEquals(codecs, hello.codecs());
+        assertEquals("kitchen", hello.room());
+        assertEquals(FORMAT, hello.format());
+        assertTrue(hello.supportsDatagrams());
+        assertFalse(hello.isPeer());
+    }
+
+    @Test
+    void readsAHelloWithoutAFormat() throws IOException {
+        Handshake.writeHello(out, EnumSet.of(AudioCodec.PCM), Handshake.PEER, Handshake.DEFAULT_ROOM);
+
+        Handshake.Hello hello = Handshake.readHello(in());
+
+        assertNotNull(hello);
+        assertNull(hello.format());
+        assertTrue(hello.isPeer());
+        assertFalse(hello.supportsDatagrams());
+    }
+
+    @Test
+    void returnsNoHelloForAnotherVersion() throws IOException {
+        out.writeInt(Handshake.MAGIC);
+        out.writeShort(Handshake.VERSION + 1);
+
+        assertNull(Handshake.readHello(in()));
+    }
+
+    @Test
+    void readsTheWelcomeThatWasWritten() throws IOException {
+        WuzlConfig config = new WuzlConfig(4000, 1920, FORMAT, true, 4001, AudioCodec.ALAW);
+        Handshake.writeWelcome(out, 42, config, true, 0x0123456789ABCDEFL);
+
+        Handshake.Welcome welcome = Handshake.readWelcome(in(), 4000);
+
+        assertEquals(42, welcome.clientId());
+        assertEquals(0x0123456789ABCDEFL, welcome.mediaToken());
+        assertEquals(4000, welcome.config().communicationPort());
+        assertEquals(1920, welcome.config().bufferSize());
+        assertEquals(FORMAT, welcome.config().serializableAudioFormat());
+        assertTrue(welcome.config().serverMixing());
+        assertEquals(4001, welcome.config().mediaPort());
+        assertEquals(AudioCodec.ALAW, welcome.config().codec());
+    }
+
+    @Test
+    void sendsNoMediaPortOrTokenToATcpClientOfAUdpServer() throws IOException {
+        Handshake.writeWelcome(out, 7, new WuzlConfig(4000, 1920, FORMAT, true, 4001, AudioCodec.PCM), false, 99);
+
+        Handshake.Welcome welcome = Handshake.readWelcome(in(), 4000);
+
+        assertEquals(0, welcome.mediaToken());
+        assertEquals(0, welcome.config().mediaPort());
+        assertTrue(welcome.config().serverMixing());
+    }
+
+    @Test
+    void throwsTheStatusOfARejection() throws IOException {
+        Handshake.writeRejection(out, Handshake.UNSUPPORTED_FORMAT);
+
+        Handshake.HandshakeException e = assertThrows(Handshake.HandshakeException.class, () -> Handshake.readWelcome(in(), 4000));
+        assertEquals(Handshake.UNSUPPORTED_FORMAT, e.getStatus());
+    }
+
+    @Test
+    void rejectsAStreamWithoutTheMagic() throws IOException {
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(Handshake.VERSION);
+
+        assertThrows(StreamCorruptedException.class, () -> Handshake.readHello(in()));
+    }
+
+    @Test
+    void rejectsAWelcomeWithAnUnknownCodec() throws IOException {
+        Handshake.writeWelcome(out, 1, new WuzlConfig(4000, 1920, FORMAT, true, 0, AudioCodec.PCM));
+        byte[] welcome = bytes.toByteArray();
+        welcome[welcome.length - 11] = (byte) AudioCodec.values().length;
+
+        assertThrows(StreamCorruptedException.class, () -> Handshake.readWelcome(new DataInputStream(new ByteArrayInputStream(welcome)), 4000));
+    }
+
+    @Test
+    void supportsCommonFormats() {
+        assertTrue(Handshake.isSupported(FORMAT));
+        assertTrue(Handshake.isSupported(new SerializableAudioFormat(8000, 8, 1, true, true)));
+        assertTrue(Handshake.isSupported(new SerializableAudioFormat(192000, 24, 2, true, false)));
+        assertTrue(Handshake.isSupported(new SerializableAudioFormat(44100, 16, 1, false, true)));
+    }
+
+    @Test
+    void rejectsMalformedFormats() {
+        for (float sampleRate : new float[]{Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 0, -44100, 7999, 192001, 1e9f}) {
+            assertFalse(Handshake.isSupported(new SerializableAudioFormat(sampleRate, 16, 2, true, false)), "sample rate " + sampleRate);
+        }
+
+        for (int sampleSizeInBits : new int[]{0, 4, 12, 20, 32, 255}) {
+            assertFalse(Handshake.isSupported(new SerializableAudioFormat(48000, sampleSizeInBits, 2, true, false)), sampleSizeInBits + " bits");
+        }
+
+        for (int channels : new int[]{0, 3, 8, 255}) {
+            assertFalse(Handshake.isSupported(new SerializableAudioFormat(48000, 16, channels, true, false)), channels + " channels");
+        }
+    }
+
+    private DataInputStream in() {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+}
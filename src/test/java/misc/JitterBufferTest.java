@@ -0,0 +1,97 @@
+package misc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+class JitterBufferTest {
+    private static final SerializableAudioFormat FORMAT = new SerializableAudioFormat(8000, 16, 1, true, true);
+    private static final int FRAME_SIZE = 64;
+
+    private final JitterBuffer buffer = new JitterBuffer(new WuzlConfig(0, FRAME_SIZE, FORMAT, true, 0, AudioCodec.PCM));
+
+
+    @Test
+    void playsReorderedFramesInOrder() {
+        write(0);
+        write(2);
+        write(1);
+
+        assertEquals(0, pollSample());
+        assertEquals(1000, pollSample());
+        assertEquals(2000, pollSample());
+        assertEquals(0, buffer.lostFrames());
+    }
+
+    @Test
+    void dropsFramesWhoseTurnHasPassed() {
+        write(0);
+        write(1);
+        pollSample();
+        pollSample();
+
+        write(1);
+
+        assertEquals(1, buffer.lateFrames());
+        assertEquals(0, buffer.depth());
+    }
+
+    @Test
+    void concealsAMissingFrameOnceAtHalfVolume() {
+        write(0);
+        write(1);
+        write(3);
+
+        assertEquals(0, pollSample());
+        assertEquals(1000, pollSample());
+        assertEquals(500, pollSample());
+        assertEquals(1, buffer.lostFrames());
+        assertEquals(3000, pollSample());
+    }
+
+    @Test
+    void returnsSilenceAfterASilenceMarker() {
+        write(0);
+        buffer.writeSilence(1);
+
+        assertEquals(0, pollSample());
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.underruns());
+    }
+
+    /**
+     * Writes a frame whose samples are all {@code 1000 * sequence}.
+     */
+    private void write(long sequence) {
+        byte[] payload = new byte[FRAME_SIZE];
+        short sample = (short) (1000 * sequence);
+
+        for (int i = 0; i < FRAME_SIZE; i += 2) {
+            payload[i] = (byte) (sample >> 8);
+            payload[i + 1] = (byte) sample;
+        }
+
+        buffer.write(sequence, payload, 0, FRAME_SIZE);
+    }
+
+    /**
+     * @return the first sample of the next frame
+     */
+    private int pollSample() {
+        Frame frame = buffer.poll();
+        assertNotNull(frame);
+
+        try {
+            return (short) ((frame.array()[0] << 8) | (frame.array()[1] & 0xFF));
+        } finally {
+            frame.release();
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package server;
+
+import client.AudioSink;
+import client.GeneratorSource;
+import client.SignalGenerator;
+import client.WuzlClient;
+import misc.AudioCodec;
+import misc.PcmSamples;
+import misc.WuzlConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two nodes of a cluster on localhost, with a room whose home is node B.
+ *
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+class ClusterTest {
+    private static final String ROOM = "home-b";
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private final List<AutoCloseable> closeables = new ArrayList<>();
+
+
+    @AfterEach
+    void close() throws Exception {
+        for (int i = closeables.size() - 1; i >= 0; i--) {
+            closeables.get(i).close();
+        }
+    }
+
+    @Test
+    void linksTheRoomToItsHomeNodeAndCarriesAudioAcross() throws Exception {
+        WuzlServer a = startServer();
+        WuzlServer b = startServer();
+        InetSocketAddress addressA = new InetSocketAddress("localhost", a.getLocalPort());
+        InetSocketAddress addressB = new InetSocketAddress("localhost", b.getLocalPort());
+        a.setRoutes(routes(addressA, addressA, addressB));
+        b.setRoutes(routes(addressB, addressA, addressB));
+
+        ByteArrayOutputStream heard = new ByteArrayOutputStream();
+        startClient(a, SignalGenerator.SINE, AudioSink.discarding());
+        WuzlClient listener = startClient(b, SignalGenerator.SILENCE, (buffer, length) -> {
+            synchronized (heard) {
+                heard.write(buffer, 0, length);
+            }
+        });
+
+        awaitTrue(() -> a.getRooms().containsKey(ROOM) && a.getRooms().get(ROOM).getUplink() != null);
+        assertNotNull(a.getRooms().get(ROOM).getUplink(), "node A links the room");
+        assertNull(b.getRooms().get(ROOM).getUplink(), "node B mixes the room itself");
+
+        // The talker on node A reaches the listener on node B through the link
+        awaitTrue(() -> rms(heard, listener.getConfig()) > 1000);
+        assertTrue(rms(heard, listener.getConfig()) > 1000, "the listener on node B hears the talker on node A");
+    }
+
+    private WuzlServer startServer() throws Exception {
+        WuzlConfig defaults = WuzlConfig.defaultSettings();
+        WuzlServer server = new WuzlServer(new WuzlConfig(0, defaults.bufferSize(), defaults.serializableAudioFormat(), true, 0, AudioCodec.ULAW));
+        closeables.add(server);
+        start(server::start);
+        return server;
+    }
+
+    private WuzlClient startClient(WuzlServer server, SignalGenerator signal, AudioSink sink) throws Exception {
+        WuzlClient client = new WuzlClient("localhost", server.getLocalPort(), ROOM, config -> new GeneratorSource(signal, 440, 0.3, config), config -> sink);
+        closeables.add(client);
+        start(client::start);
+        return client;
+    }
+
+    private static RoutingTable routes(InetSocketAddress self, InetSocketAddress a, InetSocketAddress b) {
+        RoutingTable routes = new RoutingTable(self, List.of(a, b));
+        routes.pin(ROOM, b);
+        return routes;
+    }
+
+    private static void start(Callable task) {
+        Thread thread = new Thread(() -> {
+            try {
+                task.call();
+            } catch (Exception e) {
+                // Closed by the test
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * @return the root mean square of the last second heard
+     */
+    private static double rms(ByteArrayOutputStream heard, WuzlConfig config) {
+        byte[] bytes;
+
+        synchronized (heard) {
+            bytes = heard.toByteArray();
+        }
+
+        int frameSize = config.audioFormat().getFrameSize();
+        int length = Math.min(bytes.length, (int) config.audioFormat().getFrameRate() * frameSize) / frameSize * frameSize;
+        int[] samples = new int[length / PcmSamples.bytesPerSample(config.audioFormat())];
+        int count = PcmSamples.decode(Arrays.copyOfRange(bytes, bytes.length - length, bytes.length), length, samples, config.audioFormat());
+        double sum = 0;
+
+        for (int i = 0; i < count; i++) {
+            sum += (double) samples[i] * samples[i];
+        }
+
+        return count == 0 ? 0 : Math.sqrt(sum / count);
+    }
+
+
+    private interface Callable {
+        void call() throws Exception;
+    }
+
+}
@@ -0,0 +1,145 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author : Emilio Zottel (4AHIF)
+ * @since : 18.10.2026, So.
+ **/
+class RoutingTableTest {
+    private static final InetSocketAddress A = new InetSocketAddress("localhost", 27005);
+    private static final InetSocketAddress B = new InetSocketAddress("localhost", 27006);
+    private static final InetSocketAddress C = new InetSocketAddress("localhost", 27007);
+    private static final int ROOMS = 3000;
+
+
+    @Test
+    void spreadsRoomsEvenlyAcrossTheNodes() {
+        RoutingTable table = new RoutingTable(A, List.of(A, B, C));
+        Map<InetSocketAddress, Integer> counts = new HashMap<>();
+
+        for (String room : rooms()) {
+            counts.merge(table.home(room), 1, Integer::sum);
+        }
+
+        for (InetSocketAddress node : List.of(A, B, C)) {
+            int count = counts.getOrDefault(node, 0);
+            assertTrue(count > ROOMS / 3 * 0.8 && count < ROOMS / 3 * 1.2, node + " is home of " + count + " rooms");
+        }
+    }
+
+    @Test
+    void everyNodeFindsTheSameHome() {
+        RoutingTable a = new RoutingTable(A, List.of(A, B, C));
+        RoutingTable c = new RoutingTable(C, List.of(C, B, A));
+
+        for (String room : rooms()) {
+            assertEquals(a.home(room), c.home(room), room);
+            assertEquals(a.home(room).equals(A), a.isLocal(room), room);
+            assertEquals(c.home(room).equals(C), c.isLocal(room), room);
+        }
+    }
+
+    @Test
+    void removingANodeOnlyMovesItsRooms() {
+        RoutingTable all = new RoutingTable(A, List.of(A, B, C));
+        RoutingTable withoutB = new RoutingTable(A, List.of(A, C));
+        Map<InetSocketAddress, Integer> moved = new HashMap<>();
+
+        for (String room : rooms()) {
+            InetSocketAddress before = all.home(room);
+            InetSocketAddress after = withoutB.home(room);
+
+            if (before.equals(B)) {
+                moved.merge(after, 1, Integer::sum);
+            } else {
+                assertEquals(before, after, room);
+            }
+        }
+
+        // The rooms of B are spread across both remaining nodes, not dumped on one of them
+        int total = moved.values().stream().mapToInt(Integer::intValue).sum();
+        assertTrue(moved.getOrDefault(A, 0) > total / 4, "A took " + moved.get(A) + " of " + total);
+        assertTrue(moved.getOrDefault(C, 0) > total / 4, "C took " + moved.get(C) + " of " + total);
+    }
+
+    @Test
+    void addingANodeOnlyMovesRoomsToIt() {
+        RoutingTable before = new RoutingTable(A, List.of(A, B));
+        RoutingTable after = new RoutingTable(A, List.of(A, B, C));
+
+        for (String room : rooms()) {
+            InetSocketAddress home = after.home(room);
+            assertTrue(home.equals(C) || home.equals(before.home(room)), room);
+        }
+    }
+
+    @Test
+    void sendsPinnedRoomsToTheirNode() {
+        RoutingTable table = new RoutingTable(A, List.of(A, B, C));
+
+        for (String room : rooms()) {
+            table.pin(room, B);
+        }
+
+        for (String room : rooms()) {
+            assertEquals(B, table.home(room), room);
+            assertFalse(table.isLocal(room), room);
+        }
+    }
+
+    @Test
+    void rejectsNodesOutsideTheCluster() {
+        assertThrows(IllegalArgumentException.class, () -> new RoutingTable(C, List.of(A, B)));
+        assertThrows(IllegalArgumentException.class, () -> new RoutingTable(A, List.of(A, B)).pin("lobby", C));
+    }
+
+    @Test
+    void loadsNodesAndPinnedRooms(@TempDir Path directory) throws IOException {
+        Path file = Files.writeString(directory.resolve("routes"), """
+                # Comments and empty lines are ignored
+
+                node localhost:27005
+                node localhost:27006
+                room lobby localhost:27006
+                """);
+
+        RoutingTable table = RoutingTable.load(file, A);
+
+        assertEquals(List.of(A, B), table.getNodes());
+        assertEquals(B, table.home("lobby"));
+    }
+
+    @Test
+    void rejectsUnknownEntries(@TempDir Path directory) throws IOException {
+        Path file = Files.writeString(directory.resolve("routes"), "node localhost:27005\nserver localhost:27006\n");
+
+        assertThrows(IOException.class, () -> RoutingTable.load(file, A));
+    }
+
+    private static List<String> rooms() {
+        List<String> rooms = new ArrayList<>();
+
+        for (int i = 0; i < ROOMS; i++) {
+            rooms.add("room-" + i);
+        }
+
+        return rooms;
+    }
+
+}